@@ -0,0 +1,39 @@
+package cloud.dpgmedia;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the JMH benchmarks with the usual JMH command line, but writes JSON results to
+ * {@code target/jmh-results/<commit>-<timestamp>.json} unless -rf/-rff say otherwise,
+ * so runs on different commits can be compared side by side.
+ * <p>
+ * The gc profiler is on unless -prof names other profilers, so every result includes the
+ * allocation rate and bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            Path results = Path.of("target", "jmh-results");
+            Files.createDirectories(results);
+            options.result(results.resolve(RunLabel.current() + ".json").toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package cloud.dpgmedia;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single santa hash and of one step of the nonce search, for product names of several lengths.
+ * Run with {@code -t <threads>} to see how the per hash throughput scales with concurrent miners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashCollisionBenchmark {
+
+    private static final BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
+
+    // The block header is timestamp + 64 hex digits + nonce + product name, so the name sets its length
+    @Param({"8", "64", "512"})
+    public int productNameLength;
+
+    private String timestamp;
+    private BigInteger maxHashValue;
+    private String productName;
+    private String blockHeader;
+    private SantaHashEngine engine;
+    private int nonce;
+
+    @Setup
+    public void setUp() {
+        timestamp = "2025-09-23T16:04:51.123456";
+        maxHashValue = MAX_HASH_VALUE.divide(BigInteger.valueOf(16).pow(4));
+        productName = "p".repeat(productNameLength);
+        blockHeader = timestamp + String.format("%064x", maxHashValue) + 123_456 + productName;
+        engine = new SantaHashEngine(timestamp, maxHashValue, productName);
+    }
+
+    @Benchmark
+    public String getSantaHash() {
+        return HashCollision.getSantaHash(blockHeader);
+    }
+
+    /**
+     * One iteration of the original loop in WishFulfillmentHandler: build the header, hash it, compare to the target.
+     */
+    @Benchmark
+    public boolean nonceStepWithStrings() {
+        String header = timestamp + String.format("%064x", maxHashValue) + nonce++ + productName;
+        String santaHash = HashCollision.getSantaHash(header);
+        return new BigInteger(santaHash, 16).compareTo(maxHashValue) < 0;
+    }
+
+    /**
+     * The same step as the mining workers run it today.
+     */
+    @Benchmark
+    public boolean nonceStepWithEngine() {
+        return engine.tryNonce(nonce++ & Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,100 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Listing payloads: writing wish and people arrays the way the handlers used to (one String built from
+ * String.format pieces) and the way they stream now, and parsing a batch of wishes.
+ * The streaming variants write to a null stream, as the socket would take the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ListJsonBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<Wish> wishes;
+    private List<Person> people;
+    private byte[] wishBatch;
+
+    @Setup
+    public void setUp() {
+        wishes = new ArrayList<>(size);
+        people = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wishes.add(new Wish("wish-" + i, "Product " + i, 1 + i % 5, i));
+            people.add(new Person(Optional.of(i), "First" + i, "Last" + i, LocalDate.of(2010, 5, 15),
+                    LocalDateTime.of(2024, 12, 1, 8, 30), new Location(50.0, 5.0), Behavior.NICE, 1));
+        }
+        wishBatch = wishes.stream()
+                .map(wish -> String.format("{\"productName\":\"%s\", \"quantity\":%d, \"beneficiaryId\":%d}",
+                        wish.productName, wish.quantity, wish.beneficiaryId))
+                .collect(Collectors.joining(",", "[", "]"))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String writeWishesWithFormat() {
+        return wishes.stream().map(BasicApi::generateJsonFromWish).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Benchmark
+    public void writeWishesStreaming() throws IOException {
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            generator.writeStartArray();
+            for (Wish wish : wishes) {
+                JsonResponses.writeWish(generator, wish);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    @Benchmark
+    public String writePeopleWithFormat() {
+        return people.stream().map(PeopleHandler::generateJsonFromPerson).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Benchmark
+    public void writePeopleStreaming() throws IOException {
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            generator.writeStartArray();
+            for (Person person : people) {
+                JsonResponses.writePerson(generator, person);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    @Benchmark
+    public List<WishBatchHandler.BatchItem> parseWishBatch() {
+        return WishBatchHandler.parseWishBatch(new ByteArrayInputStream(wishBatch), Integer.MAX_VALUE);
+    }
+}
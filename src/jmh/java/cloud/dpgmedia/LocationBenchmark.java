@@ -0,0 +1,40 @@
+package cloud.dpgmedia;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance calculation that sets the mining difficulty of every fulfillment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+
+    // Brussels, the equator, the south pole and near the date line, so the JIT cannot fold a single constant input
+    private final Location[] locations = {
+            new Location(50.8503, 4.3517),
+            new Location(0, 0),
+            new Location(-90, 0),
+            new Location(-33.8688, 179.9)
+    };
+    private int next;
+
+    @Benchmark
+    public double distanceToNorthPole() {
+        Location location = locations[next++ & (locations.length - 1)];
+        return location.distanceToNorthPole();
+    }
+}
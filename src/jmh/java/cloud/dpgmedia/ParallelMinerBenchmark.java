@@ -0,0 +1,63 @@
+package cloud.dpgmedia;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to mine one wish end to end with different numbers of mining threads.
+ * The timestamp is fixed, so every invocation searches the same nonces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelMinerBenchmark {
+
+    private static final BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    // Leading hex zeros of the target, every extra zero means 16 times more hashes on average
+    @Param({"4"})
+    public int difficulty;
+
+    private ExecutorService pool;
+    private ParallelMiner miner;
+    private BigInteger maxHashValue;
+
+    @Setup
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(workers);
+        miner = new ParallelMiner(pool, workers);
+        maxHashValue = MAX_HASH_VALUE.divide(BigInteger.valueOf(16).pow(difficulty));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public Optional<ParallelMiner.Result> mine() {
+        return miner.mine("2025-09-23T16:04:51.123456", maxHashValue, "pony");
+    }
+}
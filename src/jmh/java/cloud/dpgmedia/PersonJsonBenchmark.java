@@ -0,0 +1,62 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing person requests and writing a person response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonJsonBenchmark {
+
+    private final String registerPersonJson = "{\"firstName\":\"Jane\", \"lastName\":\"Doe\", \"dateOfBirth\":\"2010-05-15\", "
+            + "\"addressLocation\":{\"latitude\":50.0, \"longitude\":5.0}, \"behavior\":\"nice\"}";
+    private final String updatePersonJson = "{\"id\":1, \"version\":2, \"firstName\":\"Jane\", \"lastName\":\"Doe\", "
+            + "\"dateOfBirth\":\"2010-05-15\", \"addressLocation\":{\"latitude\":50.0, \"longitude\":5.0}, \"behavior\":\"naughty\"}";
+    private final Person person = new Person(Optional.of(42), "Jane", "Doe", LocalDate.of(2010, 5, 15),
+            LocalDateTime.of(2024, 12, 1, 8, 30, 15), new Location(50.0, 5.0), Behavior.NICE, 3);
+
+    @Benchmark
+    public Optional<RegisterPersonDto> parseRegisterPerson() {
+        return PeopleHandlerUtils.parseRegisterPersonDtoFrom(registerPersonJson);
+    }
+
+    @Benchmark
+    public Optional<UpdatePersonDto> parseUpdatePerson() {
+        return PeopleHandlerUtils.parseUpdatePersonDto(updatePersonJson);
+    }
+
+    @Benchmark
+    public String writePersonWithFormat() {
+        return PeopleHandler.generateJsonFromPerson(person);
+    }
+
+    @Benchmark
+    public String writePersonWithGenerator() throws IOException {
+        StringWriter out = new StringWriter(256);
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            JsonResponses.writePerson(generator, person);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a wish request and writing wish responses, with the String.format helpers of the handlers
+ * next to the Jackson paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WishJsonBenchmark {
+
+    private final String createWishJson = "{\"productName\":\"Red Bicycle\", \"quantity\":2, \"beneficiaryId\":5}";
+    private final String replacementWishJson = "{\"id\":\"w-2\", \"productName\":\"Blue Bicycle\", \"quantity\":1, "
+            + "\"beneficiaryId\":5, \"idOfWishToBeReplaced\":\"w-1\"}";
+    private final Wish wish = new Wish("9b2f5c1e-4a7d-4c8e-9f00-2d1b3c4e5f60", "Red Bicycle", 2, 5);
+    private final Wish newWish = new Wish("0c1d2e3f-4a5b-4c6d-8e7f-9a0b1c2d3e4f", "Blue Bicycle", 1, 5);
+
+    @Benchmark
+    public Wish parseCreateWish() {
+        return BasicApi.parseWishFromJson(createWishJson);
+    }
+
+    /**
+     * What parsing cost when every request built its own ObjectMapper.
+     */
+    @Benchmark
+    public CreateWishDto parseCreateWishWithNewMapper() throws IOException {
+        return new ObjectMapper().readValue(createWishJson, CreateWishDto.class);
+    }
+
+    @Benchmark
+    public ReplacementWish parseReplacementWish() {
+        return WishReplacementHandler.parseReplacementWishFromJson(replacementWishJson);
+    }
+
+    @Benchmark
+    public String writeWishWithFormat() {
+        return BasicApi.generateJsonFromWish(wish);
+    }
+
+    @Benchmark
+    public String writeWishWithGenerator() throws IOException {
+        StringWriter out = new StringWriter(128);
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            JsonResponses.writeWish(generator, wish);
+        }
+        return out.toString();
+    }
+
+    @Benchmark
+    public String writeWishWithMapper() {
+        return Json.write(wish);
+    }
+
+    @Benchmark
+    public String writeReplacementWithFormat() {
+        return WishReplacementHandler.generateJsonFromDeleteAndNewWish(wish, newWish);
+    }
+}
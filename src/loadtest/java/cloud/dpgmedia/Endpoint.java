@@ -0,0 +1,188 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The requests the load test can send, named as in the --mix option.
+ */
+enum Endpoint {
+
+    HELLO("hello") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            return HttpRequest.newBuilder(base.resolve("/api/hello")).GET().build();
+        }
+    },
+
+    WISH_POST("wish-post") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            Integer beneficiaryId = data.takeWishSlot();
+            if (beneficiaryId == null) {
+                return null;
+            }
+            String body = String.format("{\"productName\":\"Load test product %d\", \"quantity\":1, \"beneficiaryId\":%d}",
+                    ThreadLocalRandom.current().nextInt(1000), beneficiaryId);
+            return post(base.resolve("/api/wish"), body);
+        }
+
+        @Override
+        void onResponse(LoadData data, HttpResponse<String> response) throws IOException {
+            if (response.statusCode() == 201) {
+                data.addWish(Json.MAPPER.readTree(response.body()).get("id").asText());
+            }
+        }
+    },
+
+    WISH_GET("wish-get") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            return HttpRequest.newBuilder(base.resolve("/api/wish?limit=100")).GET().build();
+        }
+    },
+
+    PEOPLE_POST("people-post") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            return post(base.resolve("/api/people"), personJson(""));
+        }
+
+        @Override
+        void onResponse(LoadData data, HttpResponse<String> response) throws IOException {
+            if (response.statusCode() == 201) {
+                data.addBeneficiary(personId(response));
+            }
+        }
+    },
+
+    PEOPLE_PUT("people-put") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            int index = data.randomPerson();
+            int version = data.version(index);
+            String identity = String.format("\"id\":%d, \"version\":%d, ", data.personId(index), version);
+            return HttpRequest.newBuilder(base.resolve("/api/people"))
+                    .header("Content-Type", "application/json")
+                    .header(UPDATE_HEADER, index + ":" + version)
+                    .PUT(HttpRequest.BodyPublishers.ofString(personJson(identity)))
+                    .build();
+        }
+
+        @Override
+        void onResponse(LoadData data, HttpResponse<String> response) {
+            if (response.statusCode() == 200) {
+                // the server bumps the version by one on every successful update
+                String[] update = response.request().headers().firstValue(UPDATE_HEADER).orElseThrow().split(":");
+                data.updated(Integer.parseInt(update[0]), Integer.parseInt(update[1]) + 1);
+            }
+        }
+    },
+
+    PEOPLE_GET("people-get") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            return HttpRequest.newBuilder(base.resolve("/api/people?limit=100")).GET().build();
+        }
+    },
+
+    WISHFULFILL("wishfulfill") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            String wishId = data.takeUnfulfilledWish();
+            if (wishId == null) {
+                return null;
+            }
+            return fulfillment(base, wishId);
+        }
+
+        @Override
+        void onResponse(LoadData data, HttpResponse<String> response) {
+            if (response.statusCode() == 200) {
+                data.fulfilled(response.request().headers().firstValue(WISH_HEADER).orElseThrow());
+            }
+        }
+    },
+
+    // Fulfills a wish again, which answers with the stored proof instead of mining
+    WISHFULFILL_RETRY("wishfulfill-retry") {
+        @Override
+        HttpRequest request(URI base, LoadData data) {
+            String wishId = data.randomFulfilledWish();
+            if (wishId == null) {
+                return null;
+            }
+            return fulfillment(base, wishId);
+        }
+    };
+
+    // Not interpreted by the server, tell the response handler which person and version or which wish were sent
+    private static final String UPDATE_HEADER = "X-Load-Test-Update";
+    private static final String WISH_HEADER = "X-Load-Test-Wish";
+
+    final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the next request to send, or null when there is nothing to send to this endpoint yet
+     */
+    abstract HttpRequest request(URI base, LoadData data);
+
+    /**
+     * Remember what a successful response created, so later requests can refer to it.
+     */
+    void onResponse(LoadData data, HttpResponse<String> response) throws IOException {
+    }
+
+    static Endpoint fromLabel(String label) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.label.equals(label)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint in mix: " + label);
+    }
+
+    static HttpRequest post(URI uri, String json) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpRequest fulfillment(URI base, String wishId) {
+        return HttpRequest.newBuilder(base.resolve("/api/wishfulfill"))
+                .header("Content-Type", "application/json")
+                .header(WISH_HEADER, wishId)
+                .POST(HttpRequest.BodyPublishers.ofString(String.format("{\"id\":\"%s\"}", wishId)))
+                .build();
+    }
+
+    /**
+     * A person somewhere in Europe, which keeps the fulfillment difficulty in the range of real beneficiaries.
+     *
+     * @param identity id and version fields for an update, empty for a registration
+     */
+    static String personJson(String identity) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(Locale.ROOT,
+                "{%s\"firstName\":\"Load\", \"lastName\":\"Tester%d\", \"dateOfBirth\":\"2012-03-04\", "
+                        + "\"addressLocation\":{\"latitude\":%.4f, \"longitude\":%.4f}, \"behavior\":\"%s\"}",
+                identity, random.nextInt(100_000), random.nextDouble(40, 70), random.nextDouble(-10, 30),
+                random.nextBoolean() ? "nice" : "naughty");
+    }
+
+    static int personId(HttpResponse<String> registration) throws IOException {
+        JsonNode person = Json.MAPPER.readTree(registration.body());
+        return person.get("id").asInt();
+    }
+}
@@ -0,0 +1,75 @@
+package cloud.dpgmedia;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and response codes of one endpoint. Recording is wait-free, so the clients do not
+ * contend on the statistics while the load test runs.
+ */
+class EndpointStats {
+
+    // Anything slower than a minute is recorded as a minute
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long latencyNanos, int status) {
+        latencies.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+        if (status >= 400 && status < 500) {
+            rejections.increment();
+        }
+    }
+
+    /**
+     * A request that got no response, e.g. because the server closed the connection.
+     */
+    void recordError(long latencyNanos) {
+        latencies.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        errors.increment();
+    }
+
+    /**
+     * Forget everything recorded so far, called when the warmup is over.
+     */
+    void reset() {
+        latencies.reset();
+        statuses.clear();
+        rejections.reset();
+        errors.reset();
+    }
+
+    /**
+     * @return the latencies recorded since the last reset, in nanoseconds
+     */
+    Histogram histogram() {
+        return latencies.getIntervalHistogram();
+    }
+
+    /**
+     * @return the requests the server refused with a 4xx status
+     */
+    long rejections() {
+        return rejections.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,117 @@
+package cloud.dpgmedia;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The people and wishes the load test created, shared by all clients.
+ * <p>
+ * People are the ones registered while seeding, their versions are tracked so updates carry the
+ * current version. Beneficiaries are handed out one free wish slot at a time, so wish posts stay
+ * within the quota. Wishes wait in a queue until they are fulfilled once, after which their ids are
+ * kept in a ring of the most recently fulfilled ones for the retry requests.
+ */
+class LoadData {
+
+    private static final int RECENT_WISHES = 4096;
+
+    private final int[] personIds;
+    private final AtomicIntegerArray versions;
+    // one entry per wish a beneficiary can still receive
+    private final BlockingQueue<Integer> wishSlots = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<String> unfulfilledWishIds = new ConcurrentLinkedQueue<>();
+    private final AtomicReferenceArray<String> fulfilledWishIds = new AtomicReferenceArray<>(RECENT_WISHES);
+    private final AtomicLong fulfilledCount = new AtomicLong();
+
+    LoadData(int[] personIds) {
+        this.personIds = personIds;
+        this.versions = new AtomicIntegerArray(personIds.length);
+        for (int i = 0; i < personIds.length; i++) {
+            versions.set(i, 1);
+        }
+        // round-robin, so the first wishes are spread over all seeded people
+        for (int slot = 0; slot < BasicApi.MAX_WISHES_PER_BENEFICIARY; slot++) {
+            for (int personId : personIds) {
+                wishSlots.add(personId);
+            }
+        }
+    }
+
+    int people() {
+        return personIds.length;
+    }
+
+    int personId(int index) {
+        return personIds[index];
+    }
+
+    int version(int index) {
+        return versions.get(index);
+    }
+
+    /**
+     * Record a successful update, unless another client already moved the version further.
+     */
+    void updated(int index, int newVersion) {
+        int current = versions.get(index);
+        while (current < newVersion && !versions.compareAndSet(index, current, newVersion)) {
+            current = versions.get(index);
+        }
+    }
+
+    int randomPerson() {
+        return ThreadLocalRandom.current().nextInt(personIds.length);
+    }
+
+    /**
+     * Make a newly registered person available as beneficiary for a full quota of wishes.
+     */
+    void addBeneficiary(int personId) {
+        for (int slot = 0; slot < BasicApi.MAX_WISHES_PER_BENEFICIARY; slot++) {
+            wishSlots.add(personId);
+        }
+    }
+
+    /**
+     * @return a beneficiary that can receive one more wish, or null when all quotas are used up
+     */
+    Integer takeWishSlot() {
+        return wishSlots.poll();
+    }
+
+    int freeWishSlots() {
+        return wishSlots.size();
+    }
+
+    void addWish(String wishId) {
+        unfulfilledWishIds.add(wishId);
+    }
+
+    /**
+     * @return a wish that was not sent for fulfillment yet, or null when there is none
+     */
+    String takeUnfulfilledWish() {
+        return unfulfilledWishIds.poll();
+    }
+
+    void fulfilled(String wishId) {
+        long slot = fulfilledCount.getAndIncrement();
+        fulfilledWishIds.set((int) (slot % RECENT_WISHES), wishId);
+    }
+
+    /**
+     * @return one of the recently fulfilled wishes, or null when none was fulfilled yet
+     */
+    String randomFulfilledWish() {
+        long fulfilled = Math.min(fulfilledCount.get(), RECENT_WISHES);
+        if (fulfilled == 0) {
+            return null;
+        }
+        return fulfilledWishIds.get(ThreadLocalRandom.current().nextInt((int) fulfilled));
+    }
+}
@@ -0,0 +1,371 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a weighted mix of API requests from many concurrent clients and reports throughput and
+ * latency percentiles per endpoint.
+ * <p>
+ * Without --url the server is started in this JVM on a free port, against the database configured
+ * with the usual DB_* variables. Before the run the test registers --people people with one wish each,
+ * which the wish, update and fulfillment requests then refer to.
+ * <p>
+ * Wish posts only go to beneficiaries with room left in their quota, and fresh beneficiaries are
+ * registered outside the measurement when that room runs low, so wish-post keeps measuring inserts.
+ * Every wish is sent for fulfillment once by wishfulfill, which therefore measures mining, while
+ * wishfulfill-retry fulfills already fulfilled wishes again and measures the stored-proof lookup.
+ * <p>
+ * Each client sends its next request as soon as the previous one completed. With --rate the clients
+ * follow a fixed schedule instead and latency is measured from the time a request was due, so a
+ * stalled server shows up in the percentiles instead of just lowering the request rate.
+ * <p>
+ * Options, all as --name=value:
+ * <ul>
+ *     <li>url: base url of a running server, default start one in-process</li>
+ *     <li>clients: concurrent clients, default 64</li>
+ *     <li>duration: measured seconds, default 30</li>
+ *     <li>warmup: seconds of load before measuring, default 10</li>
+ *     <li>rate: total requests per second, default 0 for as fast as the server answers</li>
+ *     <li>people: people registered before the run, default 500</li>
+ *     <li>mix: endpoint:weight pairs, default {@value #DEFAULT_MIX}</li>
+ * </ul>
+ * Latency distributions are written as .hgrm files to {@code target/loadtest-results/<commit>-<timestamp>}.
+ */
+public class LoadTest {
+
+    // People registered at once when the wish slots run low
+    private static final int TOP_UP_BATCH = 32;
+    // Endpoints with a larger share of 4xx responses get a warning below the report
+    private static final double REJECTION_WARNING_SHARE = 0.01;
+
+    static final String DEFAULT_MIX = "wish-post:20,wish-get:20,people-post:10,people-put:10,people-get:30,wishfulfill:8,wishfulfill-retry:2";
+
+    record Options(URI url, int clients, int durationSeconds, int warmupSeconds, int rate, int people,
+                   Map<Endpoint, Integer> mix) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            Options options = new Options(
+                    values.containsKey("url") ? URI.create(values.remove("url")) : null,
+                    Integer.parseInt(values.getOrDefault("clients", "64")),
+                    Integer.parseInt(values.getOrDefault("duration", "30")),
+                    Integer.parseInt(values.getOrDefault("warmup", "10")),
+                    Integer.parseInt(values.getOrDefault("rate", "0")),
+                    Integer.parseInt(values.getOrDefault("people", "500")),
+                    parseMix(values.getOrDefault("mix", DEFAULT_MIX)));
+            values.keySet().removeAll(List.of("clients", "duration", "warmup", "rate", "people", "mix"));
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown options: " + values.keySet());
+            }
+            if (options.needsData() && options.people() < 1) {
+                throw new IllegalArgumentException("The mix refers to people and wishes, register at least one person with --people");
+            }
+            return options;
+        }
+
+        static Map<Endpoint, Integer> parseMix(String mix) {
+            Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.trim().split(":");
+                int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+                if (weight > 0) {
+                    weights.put(Endpoint.fromLabel(parts[0]), weight);
+                }
+            }
+            if (weights.isEmpty()) {
+                throw new IllegalArgumentException("The mix has no endpoint with a positive weight: " + mix);
+            }
+            return weights;
+        }
+
+        boolean needsData() {
+            return mix.keySet().stream().anyMatch(endpoint -> endpoint != Endpoint.HELLO);
+        }
+    }
+
+    private final Options options;
+    private final URI base;
+    private final HttpClient client;
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+    private final LongAdder toppedUp = new LongAdder();
+    private volatile boolean running = true;
+
+    LoadTest(Options options, URI base, HttpClient client) {
+        this.options = options;
+        this.base = base;
+        this.client = client;
+        this.endpoints = options.mix().keySet().toArray(new Endpoint[0]);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += options.mix().get(endpoints[i]);
+            cumulativeWeights[i] = total;
+            stats.put(endpoints[i], new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+
+        HttpServer server = null;
+        URI base = options.url();
+        if (base == null) {
+            server = BasicApi.startServer(0);
+            base = URI.create("http://localhost:" + server.getAddress().getPort());
+        }
+        System.out.println("Load testing " + base + " with " + options.clients() + " clients, mix " + options.mix());
+
+        ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clientThreads)
+                .build();
+        try {
+            LoadTest loadTest = new LoadTest(options, base, client);
+            LoadData data = options.needsData() ? loadTest.seed(clientThreads) : new LoadData(new int[0]);
+            long measuredNanos = loadTest.run(clientThreads, data);
+            loadTest.report(measuredNanos);
+        } finally {
+            clientThreads.shutdownNow();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+        // the server's request threads and the database pool keep the JVM alive otherwise
+        System.exit(0);
+    }
+
+    /**
+     * Register the people the requests refer to, with one wish each so there is something to fulfill.
+     */
+    LoadData seed(ExecutorService threads) throws Exception {
+        System.out.println("Registering " + options.people() + " people");
+        List<Future<Integer>> registrations = new ArrayList<>(options.people());
+        for (int i = 0; i < options.people(); i++) {
+            registrations.add(threads.submit(this::registerPerson));
+        }
+        int[] personIds = new int[registrations.size()];
+        for (int i = 0; i < personIds.length; i++) {
+            personIds[i] = registrations.get(i).get();
+        }
+
+        LoadData data = new LoadData(personIds);
+        List<Future<?>> wishes = new ArrayList<>(personIds.length);
+        for (int i = 0; i < personIds.length; i++) {
+            wishes.add(threads.submit(() -> {
+                HttpResponse<String> response = client.send(Endpoint.WISH_POST.request(base, data), HttpResponse.BodyHandlers.ofString());
+                Endpoint.WISH_POST.onResponse(data, response);
+                return null;
+            }));
+        }
+        for (Future<?> wish : wishes) {
+            wish.get();
+        }
+        return data;
+    }
+
+    /**
+     * Run the warmup and the measurement.
+     *
+     * @return nanoseconds between the end of the warmup and the last client finishing
+     */
+    long run(ExecutorService threads, LoadData data) throws Exception {
+        // with a rate every client sends one request per interval
+        long intervalNanos = options.rate() > 0 ? TimeUnit.SECONDS.toNanos(options.clients()) / options.rate() : 0;
+        long start = System.nanoTime();
+        List<Future<?>> clients = new ArrayList<>(options.clients());
+        for (int i = 0; i < options.clients(); i++) {
+            // spread the scheduled clients over one interval instead of starting them all at once
+            long offset = intervalNanos * i / options.clients();
+            clients.add(threads.submit(() -> {
+                runClient(data, start + offset, intervalNanos);
+                return null;
+            }));
+        }
+        // waited for with the clients, so a failing registration fails the run
+        if (options.mix().containsKey(Endpoint.WISH_POST)) {
+            clients.add(threads.submit(() -> {
+                topUpBeneficiaries(threads, data);
+                return null;
+            }));
+        }
+
+        System.out.println("Warming up for " + options.warmupSeconds() + "s");
+        TimeUnit.SECONDS.sleep(options.warmupSeconds());
+        stats.values().forEach(EndpointStats::reset);
+        long measureStart = System.nanoTime();
+        System.out.println("Measuring for " + options.durationSeconds() + "s");
+        TimeUnit.SECONDS.sleep(options.durationSeconds());
+        running = false;
+        for (Future<?> client : clients) {
+            client.get();
+        }
+        return System.nanoTime() - measureStart;
+    }
+
+    /**
+     * Register fresh beneficiaries whenever the free wish slots run low, so wish posts never run into
+     * the quota. These registrations are not part of the statistics.
+     */
+    private void topUpBeneficiaries(ExecutorService threads, LoadData data) throws Exception {
+        int lowWatermark = options.clients() * BasicApi.MAX_WISHES_PER_BENEFICIARY;
+        while (running) {
+            if (data.freeWishSlots() >= lowWatermark) {
+                TimeUnit.MILLISECONDS.sleep(1);
+                continue;
+            }
+            List<Future<Integer>> registrations = new ArrayList<>(TOP_UP_BATCH);
+            for (int i = 0; i < TOP_UP_BATCH; i++) {
+                registrations.add(threads.submit(this::registerPerson));
+            }
+            for (Future<Integer> registration : registrations) {
+                data.addBeneficiary(registration.get());
+            }
+            toppedUp.add(TOP_UP_BATCH);
+        }
+    }
+
+    private int registerPerson() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(Endpoint.post(base.resolve("/api/people"), Endpoint.personJson("")),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Registering a person failed with " + response.statusCode() + ": " + response.body());
+        }
+        return Endpoint.personId(response);
+    }
+
+    private void runClient(LoadData data, long firstRequestAt, long intervalNanos) {
+        long due = firstRequestAt;
+        while (running) {
+            Endpoint endpoint = pickEndpoint();
+            HttpRequest request = endpoint.request(base, data);
+            if (request == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long sent;
+            if (intervalNanos > 0) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                sent = due;
+                due += intervalNanos;
+            } else {
+                sent = System.nanoTime();
+            }
+
+            EndpointStats endpointStats = stats.get(endpoint);
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                endpointStats.record(System.nanoTime() - sent, response.statusCode());
+                endpoint.onResponse(data, response);
+            } catch (IOException e) {
+                endpointStats.recordError(System.nanoTime() - sent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Endpoint pickEndpoint() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException("No endpoint for " + pick);
+    }
+
+    void report(long measuredNanos) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        Path results = Path.of("target", "loadtest-results", RunLabel.current());
+        Files.createDirectories(results);
+
+        String header = String.format(Locale.ROOT, "%-17s %9s %9s %7s %7s %9s %9s %9s %9s %9s  %s",
+                "endpoint", "requests", "req/s", "4xx", "errors", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        System.out.println();
+        System.out.println(header);
+        Histogram total = new Histogram(3);
+        long totalRejections = 0;
+        long totalErrors = 0;
+        List<String> warnings = new ArrayList<>();
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            Histogram histogram = endpointStats.histogram();
+            total.add(histogram);
+            totalRejections += endpointStats.rejections();
+            totalErrors += endpointStats.errors();
+            System.out.println(row(entry.getKey().label, histogram, endpointStats.rejections(), endpointStats.errors(), seconds)
+                    + "  " + endpointStats.statuses());
+            writeDistribution(results.resolve(entry.getKey().label + ".hgrm"), histogram);
+            if (endpointStats.rejections() > histogram.getTotalCount() * REJECTION_WARNING_SHARE) {
+                warnings.add(String.format(Locale.ROOT, "%s: %.1f%% of the requests got a 4xx, its latencies partly describe the rejection path",
+                        entry.getKey().label, 100.0 * endpointStats.rejections() / histogram.getTotalCount()));
+            }
+        }
+        System.out.println(row("total", total, totalRejections, totalErrors, seconds));
+        writeDistribution(results.resolve("total.hgrm"), total);
+        System.out.println();
+        warnings.forEach(System.out::println);
+        if (toppedUp.sum() > 0) {
+            System.out.println("Registered " + toppedUp.sum() + " extra beneficiaries to keep room for wish posts");
+        }
+        System.out.println("Latency distributions written to " + results);
+    }
+
+    private static String row(String label, Histogram histogram, long rejections, long errors, double seconds) {
+        return String.format(Locale.ROOT, "%-17s %9d %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f",
+                label, histogram.getTotalCount(), histogram.getTotalCount() / seconds, rejections, errors,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(95)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            // in milliseconds, as the HdrHistogram plotter expects
+            histogram.outputPercentileDistribution(out, 1e6);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package cloud.dpgmedia;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log records from the request threads to one writer thread through a bounded ring buffer.
+ * <p>
+ * Logging threads only claim a slot with a compare-and-set and store a reference to the message and its
+ * key/value pairs, formatting and writing happen on the writer thread. Nobody ever waits on the output stream's
+ * lock or on each other's writes. When the buffer is full the record is dropped and counted instead of blocking
+ * the request, the writer reports how many were lost once it catches up.
+ * <p>
+ * Records come out as one line each, as {@code key=value} pairs:
+ * {@code ts=2025-12-01T08:30:00.123Z level=INFO thread=request-12 msg="Wish stored" wishId=w1 beneficiaryId=3}
+ */
+final class AsyncLogWriter {
+
+    private record LogRecord(long epochMillis, Log.Level level, String thread, String message, Throwable error,
+                             Object[] keyValues) {}
+
+    // The writer sleeps this long when the buffer is empty, the upper bound of the delay before a line shows up
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int mask;
+    private final LogRecord[] slots;
+    // Slot i may be written when its sequence equals the claiming position and read when it equals position + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final PrintStream out;
+    private final Thread writer;
+    private long head;
+
+    /**
+     * @param capacity records that may wait for the writer, rounded up to a power of two
+     */
+    AsyncLogWriter(int capacity, PrintStream out) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.out = out;
+        this.writer = new Thread(this::writeRecords, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return false when the buffer was full and the record was dropped
+     */
+    boolean append(Log.Level level, String message, Throwable error, Object[] keyValues) {
+        long position;
+        while (true) {
+            position = tail.get();
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                // the writer has not freed this slot yet, the buffer is full
+                dropped.increment();
+                return false;
+            }
+            // another thread claimed this position, try the next one
+        }
+        int slot = (int) position & mask;
+        slots[slot] = new LogRecord(System.currentTimeMillis(), level, Thread.currentThread().getName(), message, error, keyValues);
+        sequences.set(slot, position + 1);
+        LockSupport.unpark(writer);
+        return true;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Wait until everything appended so far has been written, at most timeoutMillis.
+     */
+    void flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (written.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+    }
+
+    private void writeRecords() {
+        StringBuilder lines = new StringBuilder(16384);
+        long reportedDrops = 0;
+        while (true) {
+            int count = 0;
+            LogRecord record;
+            while ((record = poll()) != null) {
+                format(lines, record);
+                count++;
+                if (lines.length() > 65536) {
+                    out.print(lines);
+                    lines.setLength(0);
+                }
+            }
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                format(lines, new LogRecord(System.currentTimeMillis(), Log.Level.WARN, writer.getName(),
+                        "Log buffer was full, records dropped", null, new Object[]{"dropped", drops - reportedDrops}));
+                reportedDrops = drops;
+            }
+            if (lines.length() > 0) {
+                // one write per batch instead of one per line
+                out.print(lines);
+                out.flush();
+                lines.setLength(0);
+            }
+            if (count > 0) {
+                written.addAndGet(count);
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        LogRecord record = slots[slot];
+        slots[slot] = null;
+        sequences.set(slot, head + slots.length);
+        head++;
+        return record;
+    }
+
+    private static void format(StringBuilder line, LogRecord record) {
+        line.append("ts=").append(Instant.ofEpochMilli(record.epochMillis()))
+                .append(" level=").append(record.level())
+                .append(" thread=");
+        appendValue(line, record.thread());
+        line.append(" msg=");
+        appendValue(line, record.message());
+        Object[] keyValues = record.keyValues();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            line.append(' ').append(keyValues[i]).append('=');
+            appendValue(line, keyValues[i + 1]);
+        }
+        if (record.error() != null) {
+            line.append(" error=");
+            appendValue(line, String.valueOf(record.error()));
+            StringWriter stackTrace = new StringWriter();
+            record.error().printStackTrace(new PrintWriter(stackTrace));
+            line.append('\n').append(stackTrace.toString().stripTrailing());
+        }
+        line.append('\n');
+    }
+
+    /**
+     * Quote values that would otherwise not read back as one value.
+     */
+    static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=' || c == '\\';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -1,38 +1,156 @@
 package cloud.dpgmedia;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.List;
+import java.sql.SQLException;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class BasicApi {
 
+    static final int MAX_WISHES_PER_BENEFICIARY = 3;
 
     public static void main(String[] args) throws IOException {
-        // Step 1: Create an HTTP server running on port 8000
-        HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+        int port = Integer.parseInt(getEnvOrDefault("SERVER_PORT", "8000"));
+        HttpServer server = startServer(port);
+        Log.info("Server is running", "url", "http://localhost:" + server.getAddress().getPort(),
+                "executor", getEnvOrDefault("SERVER_EXECUTOR", "virtual"), "store", Stores.kind());
+    }
+
+    /**
+     * Migrate the schema, register the endpoints and start serving.
+     *
+     * @param port port to listen on, 0 for any free port
+     * @return the running server, stop it with {@link HttpServer#stop(int)}
+     */
+    static HttpServer startServer(int port) throws IOException {
+        // Bring the database schema up to date before accepting requests, the in-memory stores need no database
+        if (Stores.kind() == Stores.Kind.POSTGRES && Boolean.parseBoolean(getEnvOrDefault("DB_MIGRATE", "true"))) {
+            try {
+                new SchemaMigrator(ConnectionPool.getInstance()::getConnection).migrate();
+            } catch (SQLException e) {
+                Log.error("Schema migration failed", e);
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        // Step 1: Create an HTTP server running on the configured port
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
         // Step 2: Define an endpoint: "/api/hello"
-        server.createContext("/api/hello", new HelloHandler());
-        server.createContext("/api/wish", new WishHandler());
-        server.createContext("/api/wishreplace", new WishReplacementHandler());
-        server.createContext("/api/people", new PeopleHandler());
-        server.createContext("/api/wishfulfill", new WishFulfillmentHandler() );
-
-        // Step 3: Start the server
-        server.setExecutor(null); // Single-threaded executor
+        createContext(server, "/api/hello", new HelloHandler());
+        createContext(server, "/api/wish", new WishHandler());
+        createContext(server, "/api/wish/batch", new WishBatchHandler());
+        createContext(server, "/api/wishreplace", new WishReplacementHandler());
+        createContext(server, "/api/people", new PeopleHandler());
+        createContext(server, "/api/people/import", new PeopleImportHandler());
+        createContext(server, "/api/people/nearby", new PeopleNearbyHandler(false));
+        createContext(server, "/api/people/nearest", new PeopleNearbyHandler(true));
+        createContext(server, "/api/wishfulfill", new WishFulfillmentHandler() );
+        server.createContext("/api/metrics", new MetricsHandler());
+
+        // Step 3: Start the server, handling requests concurrently
+        String executorMode = getEnvOrDefault("SERVER_EXECUTOR", "virtual");
+        int threads = Integer.parseInt(getEnvOrDefault("SERVER_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
+        int queueCapacity = Integer.parseInt(getEnvOrDefault("SERVER_QUEUE_CAPACITY", "1000"));
+        ExecutorService executor = createRequestExecutor(executorMode, threads, queueCapacity);
+        registerGauges(executor);
+        server.setExecutor(executor);
         server.start();
-        System.out.println("Server is running on http://localhost:8000");
+        return server;
+    }
+
+    private static void createContext(HttpServer server, String path, HttpHandler handler) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(new MetricsFilter(path));
+        context.getFilters().add(new ServerTimingFilter(path));
+        context.getFilters().add(new RequestEventFilter(path));
+    }
+
+    /**
+     * Values that are read when /api/metrics is scraped rather than recorded as they change.
+     */
+    private static void registerGauges(ExecutorService requestExecutor) {
+        Metrics metrics = Metrics.getInstance();
+        metrics.gauge("wishkeeper_http_requests_in_flight", "Requests being handled", MetricsFilter::inFlight);
+        if (requestExecutor instanceof ThreadPoolExecutor pool) {
+            // virtual threads never queue, one is started per request
+            metrics.gauge("wishkeeper_executor_queue_depth", "Requests waiting for a platform request thread",
+                    () -> pool.getQueue().size());
+            metrics.gauge("wishkeeper_executor_active_threads", "Request threads running a handler", pool::getActiveCount);
+        }
+        metrics.gauge("wishkeeper_fulfillment_jobs_queued", "Asynchronous fulfillment jobs waiting for a worker",
+                () -> FulfillmentJobs.getInstance().queuedJobs());
+        metrics.gauge("wishkeeper_fulfillment_jobs_running", "Asynchronous fulfillment jobs being mined",
+                () -> FulfillmentJobs.getInstance().runningJobs());
+        metrics.gauge("wishkeeper_mining_tasks_queued", "Mining tasks waiting for a miner thread",
+                () -> ParallelMiner.getInstance().queuedTasks());
+
+        if (Stores.kind() == Stores.Kind.POSTGRES) {
+            ConnectionPool connectionPool = ConnectionPool.getInstance();
+            metrics.gauge("wishkeeper_db_pool_connections", "Pooled database connections by state",
+                    () -> connectionPool.getStats().idle(), "state", "idle");
+            metrics.gauge("wishkeeper_db_pool_connections", "Pooled database connections by state",
+                    () -> connectionPool.getStats().active(), "state", "active");
+            metrics.gauge("wishkeeper_db_pool_waiting", "Threads waiting for a database connection",
+                    () -> connectionPool.getStats().waiting());
+            metrics.gauge("wishkeeper_db_pool_acquire_timeouts", "Connection requests that timed out",
+                    () -> connectionPool.getStats().acquireTimeouts());
+            PersonCache personCache = PersonCache.getInstance();
+            metrics.gauge("wishkeeper_person_cache_lookups", "Person cache lookups by result",
+                    () -> personCache.getStats().hits(), "result", "hit");
+            metrics.gauge("wishkeeper_person_cache_lookups", "Person cache lookups by result",
+                    () -> personCache.getStats().misses(), "result", "miss");
+        }
+        Stores.writeBehind().ifPresent(writeBehind -> {
+            metrics.gauge("wishkeeper_wish_write_behind_queued", "Wishes waiting for the next group commit",
+                    () -> writeBehind.getStats().queued());
+            metrics.gauge("wishkeeper_wish_write_behind_batches", "Group commits of wish inserts",
+                    () -> writeBehind.getStats().batches());
+        });
+    }
+
+    /**
+     * Executor that runs the HTTP handlers.
+     *
+     * @param mode          "virtual" for one virtual thread per request, "platform" for a bounded thread pool
+     * @param threads       number of platform threads, ignored in virtual mode
+     * @param queueCapacity requests that may wait for a platform thread, once full the accepting thread runs the request itself
+     */
+    static ExecutorService createRequestExecutor(String mode, int threads, int queueCapacity) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory());
+        } else if ("platform".equalsIgnoreCase(mode)) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new Thread(runnable, "request-" + threadCount.getAndIncrement()),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        throw new IllegalArgumentException("Unknown SERVER_EXECUTOR mode: " + mode + " (expected virtual or platform)");
+    }
+
+    /**
+     * Get environment variable with default fallback
+     */
+    static String getEnvOrDefault(String key, String defaultValue) {
+        String value = System.getenv(key);
+        return (value != null && !value.trim().isEmpty()) ? value : defaultValue;
     }
 
     // Step 4: Define the response logic for the endpoint
@@ -53,21 +171,17 @@ public class BasicApi {
     static class WishHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            System.out.println("handling wish request");
             String method = exchange.getRequestMethod();
 
             if ("POST".equalsIgnoreCase(method)) { // Handle POST requests to create a wish
-                System.out.println("handling post request");
-                // Parse the raw JSON request body manually
-                String body = getRequestBody(exchange);
-
-
-                // Manually parse the JSON payload (simple parsing, assumes well-formed input)
+                // Bind the JSON request body straight from the stream
                 Wish newWish;
+                long parseStart = System.nanoTime();
                 try {
-                    newWish = parseWishFromJson(body);
+                    newWish = parseWishFromJson(exchange.getRequestBody());
                 } catch (IllegalArgumentException e) {
-                    System.out.println("Validation error: " + e.getMessage());
+                    RequestTiming.record("parse", parseStart);
+                    Log.info("Validation error", "error", e.getMessage());
                     String errorResponse = String.format("{\"error\":\"%s\"}", e.getMessage());
                     exchange.sendResponseHeaders(400, errorResponse.length());
                     OutputStream os = exchange.getResponseBody();
@@ -75,11 +189,12 @@ public class BasicApi {
                     os.close();
                     return;
                 }
+                RequestTiming.record("parse", parseStart);
 
                 if (newWish != null) {
-                    Person person = new PeopleStorePostgres().getPerson(newWish.beneficiaryId);
-                    if (person == null) {
-                        System.out.println("No person found with id: " + newWish.beneficiaryId);
+                    WishInsertOutcome outcome = Stores.wishes().storeWishWithinQuota(newWish, MAX_WISHES_PER_BENEFICIARY);
+                    if (outcome == WishInsertOutcome.BENEFICIARY_NOT_FOUND) {
+                        Log.info("No person found", "personId", newWish.beneficiaryId);
                         String errorResponse = String.format("{\"error\":\"No person found with id: %d\"}", newWish.beneficiaryId);
                         exchange.sendResponseHeaders(400, errorResponse.length());
                         OutputStream os = exchange.getResponseBody();
@@ -87,15 +202,9 @@ public class BasicApi {
                         os.close();
                         return;
                     }
-
-
-                    List<Wish> wishesForBeneficiary = new WishStorePostgres().getWishesForBeneficiary(newWish.beneficiaryId);
-                    if (wishesForBeneficiary.size() < 3) {
-                        System.out.println("Beneficiary " + newWish.beneficiaryId + " has less than 3 wishes, allowing new wish.");
-                        new WishStorePostgres().storeWish(newWish);
-                    } else {
-                        System.out.println("Beneficiary " + newWish.beneficiaryId + " already has 3 wishes, cannot add more.");
-                        String errorResponse = String.format("{\"error\":\"Beneficiary %d already has 3 wishes, cannot add more\"}", newWish.beneficiaryId);
+                    if (outcome == WishInsertOutcome.QUOTA_EXCEEDED) {
+                        Log.info("Beneficiary already has the maximum number of wishes", "beneficiaryId", newWish.beneficiaryId, "maxWishes", MAX_WISHES_PER_BENEFICIARY);
+                        String errorResponse = String.format("{\"error\":\"Beneficiary %d already has %d wishes, cannot add more\"}", newWish.beneficiaryId, MAX_WISHES_PER_BENEFICIARY);
                         exchange.sendResponseHeaders(400, errorResponse.length());
                         OutputStream os = exchange.getResponseBody();
                         os.write(errorResponse.getBytes());
@@ -103,7 +212,6 @@ public class BasicApi {
                         return;
                     }
 
-
                     // Respond with a 201 Created and the created wish
                     String response = generateJsonFromWish(newWish);
                     exchange.sendResponseHeaders(201, response.length());
@@ -119,125 +227,113 @@ public class BasicApi {
                     os.close();
                 }
             } else if ("GET".equalsIgnoreCase(method)) { // Handle GET requests to list all wishe
-                // Respond with the list of all wishes in JSON format
-                WishStorePostgres postgres = new WishStorePostgres();
-                String response = generateJsonFromWish(postgres.getAllWishes());
-                exchange.sendResponseHeaders(200, response.length());
-                OutputStream os = exchange.getResponseBody();
-                os.write(response.getBytes());
-                os.close();
+                // With limit/after query parameters respond with one keyset page, otherwise with the whole list
+                Optional<PageRequest> pageRequest;
+                try {
+                    pageRequest = PageRequest.from(QueryParams.of(exchange.getRequestURI()));
+                } catch (IllegalArgumentException e) {
+                    JsonResponses.sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                if (pageRequest.isPresent()) {
+                    Page<Wish> page = Stores.wishes().getWishesPage(pageRequest.get());
+                    JsonResponses.sendPage(exchange, page, JsonResponses::writeWish);
+                    return;
+                }
+
+                // Stream the list of all wishes in JSON format while rows arrive from the database
+                WishStore store = Stores.wishes();
+                JsonResponses.streamArray(exchange, generator ->
+                        store.forEachWish(wish -> JsonResponses.writeWish(generator, wish)));
             } else {
                 // Respond with a 405 Method Not Allowed for unsupported methods
                 exchange.sendResponseHeaders(405, -1);
             }
         }
-
-        private static String getRequestBody(HttpExchange exchange) throws IOException {
-            InputStream requestBody = exchange.getRequestBody();
-            //String body = new String(requestBody.readAllBytes());
-
-            // Read all bytes using standard Java classes
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] temp = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = requestBody.read(temp)) != -1) {
-                buffer.write(temp, 0, bytesRead);
-            }
-
-            // Convert byte array to String using UTF-8 encoding
-            String body = new String(buffer.toByteArray(), "UTF-8");
-            return body;
-        }
     }
 
-    // Helper method: Parse JSON into an Wish object (manually)
+    // Helper method: Parse JSON into an Wish object
     public static Wish parseWishFromJson(String json) {
         // Assumes a simple JSON structure like: {"productName":"Laptop", "quantity":2, "beneficiaryId":5}
         // ID is auto-generated and should not be provided in the request
         try {
-            String productName, quantityStr;
-            int beneficiaryId;
-            System.out.println("Using jackson");
-            ObjectMapper mapper = new ObjectMapper();
-
-            // Auto-generate ID using UUID
-            String id = UUID.randomUUID().toString();
-
-            // Parse and validate productName
-            JsonNode productNameNode = mapper.readTree(json).path("productName");
-            if (productNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing field: productName");
-            }
-            productName = productNameNode.asText();
-
-            // Parse and validate quantity
-            JsonNode quantityNode = mapper.readTree(json).path("quantity");
-            if (quantityNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing field: quantity");
-            }
-            quantityStr = quantityNode.asText();
-
-            // Parse and validate beneficiaryId
-            JsonNode beneficiaryNode = mapper.readTree(json).path("beneficiaryId");
-            if (beneficiaryNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing field: beneficiaryId");
-            }else if (!beneficiaryNode.isInt()) {
-                throw new IllegalArgumentException("beneficiaryId must be an integer");
-            } else {
-                beneficiaryId = beneficiaryNode.asInt();
-            }
-
+            return toWish(Json.CREATE_WISH.readValue(json));
+        } catch (IOException e) {
+            Log.info("Parsing error", "error", e.getMessage());
+            // Return null if parsing fails (e.g., malformed JSON)
+            return null;
+        }
+    }
 
+    // Helper method: Parse a request body stream into an Wish object in one pass
+    public static Wish parseWishFromJson(InputStream json) {
+        try {
+            return toWish(Json.CREATE_WISH.readValue(json));
+        } catch (IOException e) {
+            Log.info("Parsing error", "error", e.getMessage());
+            // Return null if parsing fails (e.g., malformed JSON)
+            return null;
+        }
+    }
 
+    /**
+     * Validate a bound wish request.
+     *
+     * @return the wish, or null when the body was not a JSON object
+     * @throws IllegalArgumentException with the message the client gets back when a field is missing or invalid
+     */
+    static Wish toWish(CreateWishDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        // Auto-generate ID using UUID
+        String id = UUID.randomUUID().toString();
 
+        // Validate presence of productName, quantity and beneficiaryId
+        if (dto.productName() == null) {
+            throw new IllegalArgumentException("Missing field: productName");
+        }
+        if (dto.quantity() == null) {
+            throw new IllegalArgumentException("Missing field: quantity");
+        }
+        if (dto.beneficiaryId() == null) {
+            throw new IllegalArgumentException("Missing field: beneficiaryId");
+        } else if (!dto.beneficiaryId().isInt()) {
+            throw new IllegalArgumentException("beneficiaryId must be an integer");
+        }
+        int beneficiaryId = dto.beneficiaryId().asInt();
 
-            if (productName.isEmpty()) {
-                throw new IllegalArgumentException("Wish ProductName cannot be Empty");
-            }
-            System.out.println("productname is " + productName);
+        return new Wish(id, dto.productName(), parseQuantity(dto.productName(), dto.quantity()), beneficiaryId);
+    }
 
-            if (quantityStr.trim().isEmpty()) {
-                System.out.println("json contains empty quantity");
-                throw new IllegalArgumentException("Wish Quantity cannot be empty");
-            }
-            System.out.println("Quantity is:" + quantityStr);
-            Double quantitydouble = Double.parseDouble(quantityStr);
-            int quantity = quantitydouble.intValue();
-            if (quantity < 0) {
-                System.out.println("Throwing");
-                throw new IllegalArgumentException("Wish Quantity cannot be negative");
-            }
+    /**
+     * Shared product name and quantity rules of new and replacement wishes.
+     */
+    static int parseQuantity(String productName, JsonNode quantityNode) {
+        if (productName.isEmpty()) {
+            throw new IllegalArgumentException("Wish ProductName cannot be Empty");
+        }
 
-            return new Wish(id, productName, quantity, beneficiaryId);
-        } catch (Exception e) {
-            System.out.println("caught :" + e.getMessage());
-            if (e instanceof IllegalArgumentException) {
-                System.out.println(" throwing illegal argument exception again");
-                throw (IllegalArgumentException) e;
-            } else {
-                System.out.println("parsing error: " + e.getMessage());
-            }
-            // Return null if parsing fails (e.g., malformed JSON)
-            return null;
+        String quantityStr = quantityNode.asText();
+        if (quantityStr.trim().isEmpty()) {
+            throw new IllegalArgumentException("Wish Quantity cannot be empty");
+        }
+        double quantityDouble;
+        try {
+            quantityDouble = Double.parseDouble(quantityStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wish Quantity must be a number");
+        }
+        int quantity = (int) quantityDouble;
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Wish Quantity cannot be negative");
         }
+        return quantity;
     }
 
     // Helper method: Generate JSON from an Wish object (manually)
-    private static String generateJsonFromWish(Wish wish) {
+    static String generateJsonFromWish(Wish wish) {
         return String.format("{\"id\":\"%s\", \"productName\":\"%s\", \"quantity\":%d, \"beneficiaryId\":%d}", wish.id, wish.productName, wish.quantity, wish.beneficiaryId);
     }
 
-    // Helper method: Generate JSON from a list of Wish objects (manually)
-    private static String generateJsonFromWish(List<Wish> wishes) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < wishes.size(); i++) {
-            json.append(generateJsonFromWish(wishes.get(i)));
-            if (i < wishes.size() - 1) {
-                json.append(", ");
-            }
-        }
-        json.append("]");
-        return json.toString();
-    }
-
 }
\ No newline at end of file
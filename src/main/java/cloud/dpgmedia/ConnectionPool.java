@@ -0,0 +1,405 @@
+package cloud.dpgmedia;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of physical JDBC connections shared by the Postgres stores.
+ * <p>
+ * Callers borrow a connection with {@link #getConnection()} and hand it back by closing it,
+ * so existing try-with-resources blocks keep working unchanged.
+ */
+public class ConnectionPool {
+
+    // Database connection details from environment variables
+    // Password-less authentication using trust/peer auth with network isolation
+    private static final String DB_HOST = BasicApi.getEnvOrDefault("DB_HOST", "localhost");
+    private static final String DB_PORT = BasicApi.getEnvOrDefault("DB_PORT", "5432");
+    private static final String DB_NAME = BasicApi.getEnvOrDefault("DB_NAME", "webapp_db");
+    private static final String DB_USER = BasicApi.getEnvOrDefault("DB_USER", "wishkeeper");
+    private static final String DB_PASSWORD = BasicApi.getEnvOrDefault("DB_PASSWORD", "");
+    // reWriteBatchedInserts folds executeBatch INSERTs into multi-row statements
+    private static final String DB_URL = String.format("jdbc:postgresql://%s:%s/%s?reWriteBatchedInserts=true", DB_HOST, DB_PORT, DB_NAME);
+
+    // Connections that were used less than this long ago are handed out without a validation round trip
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    // Timers of the running store calls that report their acquire time, getConnection only looks for one while
+    // there are any, so the pool pays nothing for them while StoreCallEvent is disabled
+    private static final AtomicInteger ACQUIRE_TIMERS = new AtomicInteger();
+    private static final ThreadLocal<AcquireTimer> ACQUIRE_TIMER = new ThreadLocal<>();
+
+    /**
+     * Adds up the time this thread waits in {@link #getConnection()} until it is closed, see {@link #timeAcquires()}.
+     */
+    static final class AcquireTimer implements AutoCloseable {
+        private final AcquireTimer outer;
+        private long nanos;
+
+        private AcquireTimer(AcquireTimer outer) {
+            this.outer = outer;
+        }
+
+        long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public void close() {
+            if (outer != null) {
+                outer.nanos += nanos;
+                ACQUIRE_TIMER.set(outer);
+            } else {
+                ACQUIRE_TIMER.remove();
+            }
+            ACQUIRE_TIMERS.decrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a new physical connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * Point-in-time snapshot of the pool counters.
+     */
+    public record PoolStats(int total, int idle, int active, int waiting,
+                            long created, long destroyed, long acquisitions, long acquireTimeouts) {}
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final long acquireTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long idleTimeoutMillis,
+                          long acquireTimeoutMillis, int validationTimeoutSeconds) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool max size must be at least 1");
+        }
+        if (minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool min size must be between 0 and max size");
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Evict idle connections and top up to the minimum size in the background
+        long period = Math.max(1_000, idleTimeoutMillis / 2);
+        housekeeper.scheduleWithFixedDelay(this::maintain, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shared pool configured from the environment, created on first use.
+     */
+    public static ConnectionPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final ConnectionPool INSTANCE = fromEnvironment();
+    }
+
+    static ConnectionPool fromEnvironment() {
+        int minSize = Integer.parseInt(BasicApi.getEnvOrDefault("DB_POOL_MIN_SIZE", "2"));
+        int maxSize = Integer.parseInt(BasicApi.getEnvOrDefault("DB_POOL_MAX_SIZE", "10"));
+        long idleTimeoutMillis = Long.parseLong(BasicApi.getEnvOrDefault("DB_POOL_IDLE_TIMEOUT_MS", "600000"));
+        long acquireTimeoutMillis = Long.parseLong(BasicApi.getEnvOrDefault("DB_POOL_ACQUIRE_TIMEOUT_MS", "30000"));
+        int validationTimeoutSeconds = Integer.parseInt(BasicApi.getEnvOrDefault("DB_POOL_VALIDATION_TIMEOUT_S", "5"));
+        Log.info("Creating connection pool", "url", DB_URL, "minSize", minSize, "maxSize", maxSize);
+        return new ConnectionPool(ConnectionPool::openPhysicalConnection, minSize, maxSize, idleTimeoutMillis,
+                acquireTimeoutMillis, validationTimeoutSeconds);
+    }
+
+    /**
+     * Open a physical database connection with or without password
+     * Supports password-less authentication (trust/peer auth)
+     */
+    private static Connection openPhysicalConnection() throws SQLException {
+        if (DB_PASSWORD.isEmpty()) {
+            // Password-less authentication (trust/peer)
+            Properties props = new Properties();
+            props.setProperty("user", DB_USER);
+            return DriverManager.getConnection(DB_URL, props);
+        } else {
+            // Traditional password authentication
+            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        }
+    }
+
+    /**
+     * Borrow a connection. Closing the returned connection gives it back to the pool.
+     *
+     * @throws SQLTimeoutException if no connection became available within the acquire timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        AcquireTimer timer = ACQUIRE_TIMERS.get() == 0 ? null : ACQUIRE_TIMER.get();
+        if (timer == null) {
+            return acquire();
+        }
+        long start = System.nanoTime();
+        try {
+            return acquire();
+        } finally {
+            timer.nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Start timing how long the calling thread waits for connections, over all pools. Close the timer on the same
+     * thread; a timer started while another one runs adds its time to the outer one when closed.
+     */
+    static AcquireTimer timeAcquires() {
+        AcquireTimer timer = new AcquireTimer(ACQUIRE_TIMER.get());
+        ACQUIRE_TIMER.set(timer);
+        ACQUIRE_TIMERS.incrementAndGet();
+        return timer;
+    }
+
+    private Connection acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a database connection (max " + maxSize + " connections in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            acquisitions.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public PoolStats getStats() {
+        int total = totalConnections.get();
+        int idleCount = idle.size();
+        return new PoolStats(total, idleCount, maxSize - permits.availablePermits(), permits.getQueueLength(),
+                created.get(), destroyed.get(), acquisitions.get(), acquireTimeouts.get());
+    }
+
+    /**
+     * Close every idle connection and refuse new borrowers. Borrowed connections are closed when returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        while (true) {
+            // Most recently returned first, so the tail of the deque is what ages out
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                destroy(pooled);
+                continue;
+            }
+            if (reserveSlot()) {
+                return createConnection();
+            }
+            // The housekeeper is filling the last free slot, its connection will show up in the idle deque
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.nanoTime() - pooled.lastReturnedNanos < VALIDATION_BYPASS_NANOS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        try {
+            Connection physical = factory.create();
+            created.incrementAndGet();
+            return new PooledConnection(physical);
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            // Hand the connection back in the state a fresh one would be in
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.physical.clearWarnings();
+            pooled.lastReturnedNanos = System.nanoTime();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        destroyed.incrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            Log.warn("Failed to close pooled connection", "error", e.getMessage());
+        }
+    }
+
+    private void maintain() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastReturnedNanos > idleTimeoutNanos && idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        while (!closed && totalConnections.get() < minSize && reserveSlot()) {
+            try {
+                PooledConnection pooled = createConnection();
+                pooled.lastReturnedNanos = System.nanoTime();
+                idle.offerLast(pooled);
+            } catch (SQLException | RuntimeException e) {
+                Log.warn("Failed to pre-open database connection", "error", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private class PooledConnection {
+        final Connection physical;
+        volatile long lastReturnedNanos = System.nanoTime();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Forwards everything to the physical connection, except close() which returns it to the pool.
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
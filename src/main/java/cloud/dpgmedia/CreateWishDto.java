@@ -0,0 +1,9 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Body of POST /api/wish. quantity and beneficiaryId stay JSON nodes so validation can tell
+ * a missing value from an empty or non-integer one, see {@link BasicApi#parseWishFromJson(String)}.
+ */
+public record CreateWishDto(String productName, JsonNode quantity, JsonNode beneficiaryId) {}
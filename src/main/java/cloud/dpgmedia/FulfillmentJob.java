@@ -0,0 +1,79 @@
+package cloud.dpgmedia;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A wish fulfillment that is mined in the background. Mining threads update it, status requests read it.
+ */
+public class FulfillmentJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * What GET /api/wishfulfill/{jobId} returns. Result fields stay null until the job is done.
+     */
+    public record StatusView(String jobId, String wishId, Status status, long hashesTried, String santaHash,
+                             String blockHeader, Integer nonce, Long durationMillis, String error) {}
+
+    public final String id = UUID.randomUUID().toString();
+    public final String wishId;
+    public final LongAdder hashesTried = new LongAdder();
+    private volatile Status status = Status.QUEUED;
+    private volatile ParallelMiner.Result result;
+    private volatile String error;
+    private volatile long finishedAtMillis;
+
+    public FulfillmentJob(String wishId) {
+        this.wishId = wishId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public ParallelMiner.Result getResult() {
+        return result;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void complete(ParallelMiner.Result result) {
+        this.result = result;
+        finish(Status.DONE);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status finalStatus) {
+        finishedAtMillis = System.currentTimeMillis();
+        status = finalStatus;
+    }
+
+    public StatusView toStatusView() {
+        ParallelMiner.Result done = result;
+        if (done == null) {
+            return new StatusView(id, wishId, status, hashesTried.sum(), null, null, null, null, error);
+        }
+        return new StatusView(id, wishId, status, done.hashesTried(), done.santaHash(), done.blockHeader(),
+                done.nonce(), done.durationMillis(), error);
+    }
+}
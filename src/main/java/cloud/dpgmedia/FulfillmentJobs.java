@@ -0,0 +1,141 @@
+package cloud.dpgmedia;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs asynchronous fulfillments on a bounded worker pool and keeps their status for polling.
+ * <p>
+ * Finished jobs are forgotten after the retention period so the registry does not grow without bound.
+ * The proof of a successful job is handed to the proof sink before the job is marked done.
+ */
+public class FulfillmentJobs {
+
+    private static final String SHUT_DOWN = "Shut down before the job finished";
+
+    private final ParallelMiner miner;
+    private final Consumer<FulfillmentProof> proofSink;
+    private final ThreadPoolExecutor workers;
+    private final long retentionMillis;
+    private final Map<String, FulfillmentJob> jobs = new ConcurrentHashMap<>();
+
+    public FulfillmentJobs(ParallelMiner miner, Consumer<FulfillmentProof> proofSink, int workerCount, int queueCapacity,
+                           long retentionMillis) {
+        this.miner = miner;
+        this.proofSink = proofSink;
+        this.retentionMillis = retentionMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fulfillment-job-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static FulfillmentJobs getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final FulfillmentJobs INSTANCE = new FulfillmentJobs(
+                ParallelMiner.getInstance(),
+                Stores.proofs()::storeProof,
+                Integer.parseInt(BasicApi.getEnvOrDefault("FULFILLMENT_JOB_WORKERS", "2")),
+                Integer.parseInt(BasicApi.getEnvOrDefault("FULFILLMENT_JOB_QUEUE_CAPACITY", "100")),
+                Long.parseLong(BasicApi.getEnvOrDefault("FULFILLMENT_JOB_RETENTION_MS", "3600000")));
+    }
+
+    /**
+     * Queue a mining run.
+     *
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public FulfillmentJob submit(String wishId, String timestamp, BigInteger maxHashValue, String productName) {
+        return submit(wishId, timestamp, maxHashValue, productName, Double.NaN);
+    }
+
+    /**
+     * @param distanceKm distance of the beneficiary to the North Pole, only reported in the {@link MiningRunEvent}
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public FulfillmentJob submit(String wishId, String timestamp, BigInteger maxHashValue, String productName, double distanceKm) {
+        evictExpired();
+        FulfillmentJob job = new FulfillmentJob(wishId);
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> run(job, timestamp, maxHashValue, productName, distanceKm));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job;
+    }
+
+    public int queuedJobs() {
+        return workers.getQueue().size();
+    }
+
+    public int runningJobs() {
+        return workers.getActiveCount();
+    }
+
+    public Optional<FulfillmentJob> get(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Stop the workers. Running jobs are interrupted and queued jobs never start, both end up failed.
+     * Waits at most timeoutMillis for the running jobs to leave the miner.
+     *
+     * @return whether every worker stopped in time
+     */
+    public boolean shutdownNow(long timeoutMillis) throws InterruptedException {
+        workers.shutdownNow();
+        for (FulfillmentJob job : jobs.values()) {
+            if (job.getStatus() == FulfillmentJob.Status.QUEUED) {
+                job.fail(SHUT_DOWN);
+            }
+        }
+        return workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(FulfillmentJob job, String timestamp, BigInteger maxHashValue, String productName, double distanceKm) {
+        job.markRunning();
+        try {
+            MiningRunEvent miningEvent = new MiningRunEvent();
+            miningEvent.begin();
+            Optional<ParallelMiner.Result> result = miner.mine(timestamp, maxHashValue, productName, job.hashesTried);
+            miningEvent.end(job.wishId, distanceKm, maxHashValue, job.hashesTried.sum(), result.isPresent());
+            if (result.isPresent()) {
+                proofSink.accept(FulfillmentProof.from(job.wishId, maxHashValue, result.get()));
+                job.complete(result.get());
+            } else {
+                job.fail("No valid santa hash found for this wish");
+            }
+        } catch (RuntimeException e) {
+            if (workers.isShutdown()) {
+                // interrupted by shutdownNow, not a failure worth a stack trace
+                job.fail(SHUT_DOWN);
+                return;
+            }
+            Log.error("Fulfillment job failed", e, "jobId", job.id, "wishId", job.wishId);
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAtMillis() < cutoff);
+    }
+}
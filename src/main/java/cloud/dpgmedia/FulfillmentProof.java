@@ -0,0 +1,35 @@
+package cloud.dpgmedia;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Stored result of mining a wish. maxHashValue is the target as 64 hex digits, as it appears in the block header.
+ */
+public record FulfillmentProof(String wishId, String santaHash, String blockHeader, int nonce, String maxHashValue,
+                               long hashesTried, long durationMillis, LocalDateTime fulfilledAt) {
+
+    public static FulfillmentProof from(String wishId, BigInteger maxHashValue, ParallelMiner.Result result) {
+        return new FulfillmentProof(wishId, result.santaHash(), result.blockHeader(), result.nonce(),
+                String.format("%064x", maxHashValue), result.hashesTried(), result.durationMillis(), LocalDateTime.now());
+    }
+
+    /**
+     * Check the proof with a single hash: the block header was mined for this target and hashes to the
+     * stored santa hash, which is below the target.
+     */
+    public boolean verify() {
+        if (!blockHeader.contains(maxHashValue)) {
+            return false;
+        }
+        String recomputed = HashCollision.getSantaHash(blockHeader);
+        return recomputed.equals(santaHash) && new BigInteger(recomputed, 16).compareTo(new BigInteger(maxHashValue, 16)) < 0;
+    }
+
+    /**
+     * Plain text response of a synchronous POST /api/wishfulfill.
+     */
+    public String toResponseText() {
+        return "Found valid santa hash: " + santaHash + " for block header: " + blockHeader + " in " + durationMillis + " ms";
+    }
+}
@@ -0,0 +1,18 @@
+package cloud.dpgmedia;
+
+import java.util.Optional;
+
+/**
+ * Storage of the proofs of fulfilled wishes. {@link Stores#proofs()} returns the implementation selected with STORE.
+ */
+public interface FulfillmentProofStore {
+
+    /**
+     * Store the proof unless the wish already has one.
+     *
+     * @return the proof that is stored for the wish, which is the existing one when another fulfillment finished first
+     */
+    FulfillmentProof storeProof(FulfillmentProof proof);
+
+    Optional<FulfillmentProof> getProof(String wishId);
+}
@@ -0,0 +1,21 @@
+package cloud.dpgmedia;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FulfillmentProofStoreInMemory implements FulfillmentProofStore {
+
+    private final Map<String, FulfillmentProof> proofs = new ConcurrentHashMap<>();
+
+    @Override
+    public FulfillmentProof storeProof(FulfillmentProof proof) {
+        FulfillmentProof existing = proofs.putIfAbsent(proof.wishId(), proof);
+        return existing == null ? proof : existing;
+    }
+
+    @Override
+    public Optional<FulfillmentProof> getProof(String wishId) {
+        return Optional.ofNullable(proofs.get(wishId));
+    }
+}
@@ -0,0 +1,77 @@
+package cloud.dpgmedia;
+
+import java.sql.*;
+import java.util.Optional;
+
+public class FulfillmentProofStorePostgres implements FulfillmentProofStore {
+
+    /**
+     * Borrow a connection from the shared pool, closing it returns it to the pool
+     */
+    private static Connection getConnection() throws SQLException {
+        return ConnectionPool.getInstance().getConnection();
+    }
+
+    /**
+     * Store the proof unless the wish already has one.
+     *
+     * @return the proof that is stored for the wish, which is the existing one when another fulfillment finished first
+     */
+    @Override
+    public FulfillmentProof storeProof(FulfillmentProof proof) {
+        String sql = "INSERT INTO fulfillment_proofs (wishId, santaHash, blockHeader, nonce, maxHashValue, hashesTried, durationMillis, fulfilledAt) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (wishId) DO NOTHING";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setString(1, proof.wishId());
+            preparedStatement.setString(2, proof.santaHash());
+            preparedStatement.setString(3, proof.blockHeader());
+            preparedStatement.setInt(4, proof.nonce());
+            preparedStatement.setString(5, proof.maxHashValue());
+            preparedStatement.setLong(6, proof.hashesTried());
+            preparedStatement.setLong(7, proof.durationMillis());
+            preparedStatement.setTimestamp(8, Timestamp.valueOf(proof.fulfilledAt()));
+
+            if (preparedStatement.executeUpdate() > 0) {
+                Log.debug("Stored fulfillment proof", "wishId", proof.wishId());
+                return proof;
+            }
+        } catch (SQLException e) {
+            Log.error("Storing fulfillment proof failed", e, "wishId", proof.wishId());
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        Log.info("Wish was already fulfilled, keeping the stored proof", "wishId", proof.wishId());
+        return getProof(proof.wishId()).orElseThrow(() -> new RuntimeException("Fulfillment proof for wish " + proof.wishId() + " disappeared"));
+    }
+
+    @Override
+    public Optional<FulfillmentProof> getProof(String wishId) {
+        String sql = "SELECT wishId, santaHash, blockHeader, nonce, maxHashValue, hashesTried, durationMillis, fulfilledAt "
+                + "FROM fulfillment_proofs WHERE wishId = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setString(1, wishId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new FulfillmentProof(
+                        resultSet.getString("wishId"),
+                        resultSet.getString("santaHash"),
+                        resultSet.getString("blockHeader"),
+                        resultSet.getInt("nonce"),
+                        resultSet.getString("maxHashValue"),
+                        resultSet.getLong("hashesTried"),
+                        resultSet.getLong("durationMillis"),
+                        resultSet.getTimestamp("fulfilledAt").toLocalDateTime()));
+            }
+        } catch (SQLException e) {
+            Log.error("Reading fulfillment proof failed", e, "wishId", wishId);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+}
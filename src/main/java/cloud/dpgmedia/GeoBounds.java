@@ -0,0 +1,54 @@
+package cloud.dpgmedia;
+
+/**
+ * Latitude/longitude rectangle that holds every point within a radius of a center, the prefilter for radius
+ * searches before the exact haversine distance is computed.
+ * <p>
+ * Near a pole the circle covers all longitudes. A circle across the antimeridian gives a rectangle whose
+ * minLongitude is larger than its maxLongitude, meaning longitudes from minLongitude up to 180 plus
+ * -180 up to maxLongitude.
+ */
+record GeoBounds(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+
+    // Half the circumference, every point on earth is within this distance
+    static final double MAX_RADIUS_KM = Math.PI * Location.EARTH_RADIUS_KM;
+
+    /**
+     * Bounding coordinates of a spherical cap, see Jan Matuschek, "Finding Points Within a Distance of a Latitude/Longitude".
+     */
+    static GeoBounds around(Location center, double radiusKm) {
+        double angularRadius = radiusKm / Location.EARTH_RADIUS_KM;
+        double latitude = Math.toRadians(center.getLatitude());
+        double minLatitude = latitude - angularRadius;
+        double maxLatitude = latitude + angularRadius;
+        if (minLatitude <= -Math.PI / 2 || maxLatitude >= Math.PI / 2) {
+            // the circle contains a pole
+            return new GeoBounds(Math.toDegrees(Math.max(minLatitude, -Math.PI / 2)), Math.toDegrees(Math.min(maxLatitude, Math.PI / 2)), -180, 180);
+        }
+        double longitudeDelta = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(latitude)));
+        double minLongitude = center.getLongitude() - longitudeDelta;
+        double maxLongitude = center.getLongitude() + longitudeDelta;
+        if (maxLongitude - minLongitude >= 360) {
+            return new GeoBounds(Math.toDegrees(minLatitude), Math.toDegrees(maxLatitude), -180, 180);
+        }
+        if (minLongitude < -180) {
+            minLongitude += 360;
+        } else if (maxLongitude > 180) {
+            maxLongitude -= 360;
+        }
+        return new GeoBounds(Math.toDegrees(minLatitude), Math.toDegrees(maxLatitude), minLongitude, maxLongitude);
+    }
+
+    boolean crossesAntimeridian() {
+        return minLongitude > maxLongitude;
+    }
+
+    boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        return crossesAntimeridian()
+                ? longitude >= minLongitude || longitude <= maxLongitude
+                : longitude >= minLongitude && longitude <= maxLongitude;
+    }
+}
@@ -0,0 +1,190 @@
+package cloud.dpgmedia;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spatial index from int ids to coordinates, for radius and nearest neighbour searches without a full scan.
+ * <p>
+ * The earth is divided in cells of {@value #CELL_DEGREES} by {@value #CELL_DEGREES} degrees, about 11 km north to
+ * south. Each occupied cell keeps its ids and coordinates in parallel primitive arrays, so a search reads a few
+ * cells sequentially and computes distances without touching the indexed objects. Cells are guarded by
+ * {@value #STRIPES} read/write locks picked by cell, searches share them and only writers to the same stripe wait.
+ */
+final class GeoGrid {
+
+    static final double CELL_DEGREES = 0.1;
+    // Power of two, so a stripe is picked with a mask
+    private static final int STRIPES = 64;
+
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[STRIPES];
+
+    GeoGrid() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(int id, double latitude, double longitude);
+    }
+
+    void add(int id, Location location) {
+        long key = cellKey(location.getLatitude(), location.getLongitude());
+        ReentrantReadWriteLock.WriteLock lock = lockOf(key).writeLock();
+        lock.lock();
+        try {
+            cells.computeIfAbsent(key, cell -> new Cell()).add(id, location.getLatitude(), location.getLongitude());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(int id, Location location) {
+        long key = cellKey(location.getLatitude(), location.getLongitude());
+        ReentrantReadWriteLock.WriteLock lock = lockOf(key).writeLock();
+        lock.lock();
+        try {
+            Cell cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param from null when the id was not indexed yet
+     * @param to   null to only remove the id
+     */
+    void move(int id, Location from, Location to) {
+        if (from != null) {
+            remove(id, from);
+        }
+        if (to != null) {
+            add(id, to);
+        }
+    }
+
+    /**
+     * Visit every indexed point inside the bounds, plus some just outside in the boundary cells.
+     */
+    void visit(GeoBounds bounds, Visitor visitor) {
+        int minRow = row(bounds.minLatitude());
+        int maxRow = row(bounds.maxLatitude());
+        int minColumn = column(bounds.minLongitude());
+        int maxColumn = column(bounds.maxLongitude());
+        int columns = bounds.crossesAntimeridian()
+                ? column(180) - minColumn + 1 + maxColumn - column(-180) + 1
+                : maxColumn - minColumn + 1;
+        long cellsInBounds = (long) (maxRow - minRow + 1) * columns;
+
+        if (cellsInBounds > cells.size()) {
+            // a large search area, cheaper to go over the occupied cells than over every cell in the area
+            for (Map.Entry<Long, Cell> cell : cells.entrySet()) {
+                long key = cell.getKey();
+                int row = (int) (key >> 32);
+                int column = (int) key;
+                boolean inColumns = bounds.crossesAntimeridian()
+                        ? column >= minColumn || column <= maxColumn
+                        : column >= minColumn && column <= maxColumn;
+                if (row >= minRow && row <= maxRow && inColumns) {
+                    visitCell(key, cell.getValue(), visitor);
+                }
+            }
+            return;
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            if (bounds.crossesAntimeridian()) {
+                visitRow(row, minColumn, column(180), visitor);
+                visitRow(row, column(-180), maxColumn, visitor);
+            } else {
+                visitRow(row, minColumn, maxColumn, visitor);
+            }
+        }
+    }
+
+    private void visitRow(int row, int fromColumn, int toColumn, Visitor visitor) {
+        for (int column = fromColumn; column <= toColumn; column++) {
+            long key = key(row, column);
+            Cell cell = cells.get(key);
+            if (cell != null) {
+                visitCell(key, cell, visitor);
+            }
+        }
+    }
+
+    private void visitCell(long key, Cell cell, Visitor visitor) {
+        ReentrantReadWriteLock.ReadLock lock = lockOf(key).readLock();
+        lock.lock();
+        try {
+            for (int i = 0; i < cell.size; i++) {
+                visitor.visit(cell.ids[i], cell.latitudes[i], cell.longitudes[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock lockOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return locks[(int) (h >>> 58) & (STRIPES - 1)];
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int column(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    static long cellKey(double latitude, double longitude) {
+        return key(row(latitude), column(longitude));
+    }
+
+    /**
+     * Points of one cell, only changed under the write lock of its stripe.
+     */
+    private static final class Cell {
+        private int[] ids = new int[4];
+        private double[] latitudes = new double[4];
+        private double[] longitudes = new double[4];
+        private int size;
+
+        void add(int id, double latitude, double longitude) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    // order within a cell does not matter, fill the gap with the last point
+                    size--;
+                    ids[i] = ids[size];
+                    latitudes[i] = latitudes[size];
+                    longitudes[i] = longitudes[size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cloud.dpgmedia;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one handled HTTP request, committed by {@link RequestEventFilter}.
+ */
+@Name("cloud.dpgmedia.HttpRequest")
+@Label("HTTP Request")
+@Category({"Wish Keeper", "HTTP"})
+@Description("A request handled by one of the API contexts")
+@StackTrace(false)
+class HttpRequestEvent extends jdk.jfr.Event {
+
+    @Label("Context")
+    String context;
+
+    @Label("Method")
+    String method;
+
+    @Label("Status")
+    int status;
+
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+}
@@ -0,0 +1,73 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+
+/**
+ * Shared, thread-safe Jackson configuration. Building an ObjectMapper is expensive, so nothing should create one per request.
+ * <p>
+ * Every request DTO has its own preconfigured reader that binds the request body in a single pass.
+ */
+public final class Json {
+
+    public static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            // clients send behavior as "nice" as well as "NICE"
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            // dates as ISO strings like the hand written responses, not as arrays
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    public static final ObjectReader CREATE_WISH = MAPPER.readerFor(CreateWishDto.class);
+    public static final ObjectReader REPLACEMENT_WISH = MAPPER.readerFor(ReplacementWishDto.class);
+    public static final ObjectReader WISH_FULFILLMENT = MAPPER.readerFor(WishFulfillmentDto.class);
+    public static final ObjectReader UPDATE_PERSON = MAPPER.readerFor(UpdatePersonDto.class);
+    // Unknown properties are routed to the handler so id and version can be refused, everything else is skipped
+    public static final ObjectReader REGISTER_PERSON = MAPPER.readerFor(RegisterPersonDto.class)
+            .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .withHandler(new RejectIdentityOnRegistration());
+
+    private Json() {
+    }
+
+    public static String write(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static final class RejectIdentityOnRegistration extends DeserializationProblemHandler {
+        @Override
+        public boolean handleUnknownProperty(DeserializationContext context, JsonParser parser, JsonDeserializer<?> deserializer,
+                                             Object beanOrClass, String propertyName) throws IOException {
+            // For an object or array value the parser already entered that value's own context
+            JsonStreamContext parsing = parser.getParsingContext();
+            if (parser.currentToken() != null && parser.currentToken().isStructStart()) {
+                parsing = parsing.getParent();
+            }
+            boolean topLevel = parsing.getParent().inRoot();
+            if (topLevel && ("id".equals(propertyName) || "version".equals(propertyName))) {
+                throw JsonMappingException.from(parser, "Request body should not contain id or version for registration");
+            }
+            parser.skipChildren();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Streams JSON responses straight into the exchange body, so large listings never exist as one String.
+ */
+public final class JsonResponses {
+
+    @FunctionalInterface
+    public interface ArrayElements {
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ElementWriter<T> {
+        void write(JsonGenerator generator, T element) throws IOException;
+    }
+
+    private JsonResponses() {
+    }
+
+    /**
+     * Send a 200 with a chunked JSON array body whose elements are written by the callback as they are produced.
+     */
+    public static void streamArray(HttpExchange exchange, ArrayElements elements) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        // Length 0 switches the HttpServer to chunked transfer encoding
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody();
+             JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(os)) {
+            generator.writeStartArray();
+            elements.writeTo(generator);
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Send a 200 with {@code {"items":[...], "next":"cursor"}}, next is null on the last page.
+     */
+    public static <T> void sendPage(HttpExchange exchange, Page<T> page, ElementWriter<T> writer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody();
+             JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(os)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+            for (T item : page.items()) {
+                writer.write(generator, item);
+            }
+            generator.writeEndArray();
+            generator.writeStringField("next", page.next());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Send {@code {"error":"message"}} with the given status.
+     */
+    public static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = Json.MAPPER.writeValueAsBytes(Map.of("error", message));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // Same fields as BasicApi.generateJsonFromWish
+    public static void writeWish(JsonGenerator generator, Wish wish) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", wish.id);
+        generator.writeStringField("productName", wish.productName);
+        generator.writeNumberField("quantity", wish.quantity);
+        generator.writeNumberField("beneficiaryId", wish.beneficiaryId);
+        generator.writeEndObject();
+    }
+
+    // Same fields as PeopleHandler.generateJsonFromPerson
+    public static void writePerson(JsonGenerator generator, Person person) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", String.valueOf(person.id.orElse(null)));
+        generator.writeStringField("firstName", person.firstName);
+        generator.writeStringField("lastName", person.lastName);
+        generator.writeStringField("dateOfBirth", String.valueOf(person.dateOfBirth));
+        generator.writeStringField("timeOfRegistration", String.valueOf(person.timeOfRegistration));
+        generator.writeStringField("behavior", String.valueOf(person.behavior));
+        if (person.addressLocation != null) {
+            generator.writeObjectFieldStart("addressLocation");
+            generator.writeNumberField("latitude", person.addressLocation.getLatitude());
+            generator.writeNumberField("longitude", person.addressLocation.getLongitude());
+            generator.writeEndObject();
+        } else {
+            generator.writeNullField("addressLocation");
+        }
+        generator.writeNumberField("version", person.version);
+        generator.writeEndObject();
+    }
+
+    public static void writeNearby(JsonGenerator generator, PeopleStore.Nearby nearby) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("distanceKm", nearby.distanceKm());
+        generator.writeFieldName("person");
+        writePerson(generator, nearby.person());
+        generator.writeEndObject();
+    }
+}
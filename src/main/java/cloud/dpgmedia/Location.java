@@ -1,6 +1,8 @@
 package cloud.dpgmedia;
 
 public class Location {
+    static final double EARTH_RADIUS_KM = 6371;
+
     private double latitude;
     private double longitude;
 
@@ -19,14 +21,15 @@ public class Location {
     }
 
     private void setLatitude(double latitude) {
-        if (latitude < -90 || latitude > 90) {
+        // negated so NaN is refused as well
+        if (!(latitude >= -90 && latitude <= 90)) {
             throw new IllegalArgumentException("Latitude must be between -90 and 90 degrees.");
         }
         this.latitude = latitude;
     }
 
     private void setLongitude(double longitude) {
-        if (longitude < -180 || longitude > 180) {
+        if (!(longitude >= -180 && longitude <= 180)) {
             throw new IllegalArgumentException("Longitude must be between -180 and 180 degrees.");
         }
         this.longitude = longitude;
@@ -38,6 +41,22 @@ public class Location {
         return "Location [Latitude: " + latitude + ", Longitude: " + longitude + "]";
     }
 
+    /**
+     * Great-circle distance in kilometers, with the haversine formula on the same earth radius as {@link #distanceToNorthPole()}.
+     */
+    public double distanceTo(Location other) {
+        return distanceKm(latitude, longitude, other.latitude, other.longitude);
+    }
+
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latDistance = Math.toRadians(latitude2 - latitude1);
+        double lonDistance = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
     public double distanceToNorthPole() {
         // Haversine formula to calculate distance to the North Pole (90, 0)
         final int R = 6371; // Radius of the Earth in kilometers
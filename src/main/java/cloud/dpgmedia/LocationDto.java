@@ -1,3 +1,6 @@
 package cloud.dpgmedia;
 
-public record LocationDto (double latitude, double longitude) {}
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record LocationDto (@JsonProperty(required = true) double latitude,
+                           @JsonProperty(required = true) double longitude) {}
@@ -0,0 +1,88 @@
+package cloud.dpgmedia;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Application logging. Calls return as soon as the record is queued, a background thread formats and writes
+ * it to stdout, see {@link AsyncLogWriter}.
+ * <p>
+ * Configured with LOG_LEVEL (DEBUG, INFO, WARN or ERROR, default INFO), LOG_DEBUG_SAMPLE_RATE (only one in
+ * that many {@link #debugSampled} records is kept, default 1000) and LOG_BUFFER_SIZE (records that may wait
+ * for the writer, default 65536).
+ * <p>
+ * Pass context as alternating keys and values instead of concatenating it into the message, the values are
+ * only turned into text on the writer thread and nothing is built at all when the level is off:
+ * {@code Log.info("Wish stored", "wishId", wish.id, "beneficiaryId", wish.beneficiaryId)}.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final Level LEVEL = Level.valueOf(BasicApi.getEnvOrDefault("LOG_LEVEL", "INFO").toUpperCase());
+    private static final int DEBUG_SAMPLE_RATE = Integer.parseInt(BasicApi.getEnvOrDefault("LOG_DEBUG_SAMPLE_RATE", "1000"));
+
+    private Log() {
+    }
+
+    private static class Holder {
+        private static final AsyncLogWriter WRITER = create();
+
+        private static AsyncLogWriter create() {
+            AsyncLogWriter writer = new AsyncLogWriter(
+                    Integer.parseInt(BasicApi.getEnvOrDefault("LOG_BUFFER_SIZE", "65536")), System.out);
+            // write what is still queued when the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writer.flush(1000), "log-flush"));
+            return writer;
+        }
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0;
+    }
+
+    public static void debug(String message, Object... keyValues) {
+        log(Level.DEBUG, message, null, keyValues);
+    }
+
+    /**
+     * Debug record for something that happens per row or per item, where keeping every record would flood the
+     * output. Only one in LOG_DEBUG_SAMPLE_RATE calls is kept, marked with the rate it was sampled at.
+     */
+    public static void debugSampled(String message, Object... keyValues) {
+        if (!isEnabled(Level.DEBUG) || ThreadLocalRandom.current().nextInt(DEBUG_SAMPLE_RATE) != 0) {
+            return;
+        }
+        Object[] sampled = new Object[keyValues.length + 2];
+        System.arraycopy(keyValues, 0, sampled, 0, keyValues.length);
+        sampled[keyValues.length] = "sampleRate";
+        sampled[keyValues.length + 1] = DEBUG_SAMPLE_RATE;
+        Holder.WRITER.append(Level.DEBUG, message, null, sampled);
+    }
+
+    public static void info(String message, Object... keyValues) {
+        log(Level.INFO, message, null, keyValues);
+    }
+
+    public static void warn(String message, Object... keyValues) {
+        log(Level.WARN, message, null, keyValues);
+    }
+
+    public static void error(String message, Throwable error, Object... keyValues) {
+        log(Level.ERROR, message, error, keyValues);
+    }
+
+    /**
+     * Wait until the queued records are written, for tools that exit right after logging.
+     */
+    public static void flush() {
+        Holder.WRITER.flush(1000);
+    }
+
+    private static void log(Level level, String message, Throwable error, Object[] keyValues) {
+        if (isEnabled(level)) {
+            Holder.WRITER.append(level, message, error, keyValues);
+        }
+    }
+}
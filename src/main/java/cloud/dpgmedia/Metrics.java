@@ -0,0 +1,198 @@
+package cloud.dpgmedia;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the counters, histograms and gauges served in Prometheus text format on /api/metrics.
+ * <p>
+ * Recording never takes a lock: counters and histogram buckets are {@link LongAdder}s, which spread
+ * concurrent increments over cells instead of contending on one value. Look a metric up once and keep it
+ * where that is easy, the lookup itself is a concurrent map read plus building the label key.
+ */
+public final class Metrics {
+
+    // Seconds, from a fast in-memory call up to a slow fulfillment
+    static final double[] LATENCY_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static final class Histogram {
+        private final double[] bounds;
+        // one bucket per bound plus +Inf, not cumulative, summed up when scraped
+        private final LongAdder[] buckets;
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(value);
+        }
+
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+    }
+
+    private enum Type {
+        COUNTER, HISTOGRAM, GAUGE
+    }
+
+    private record Family(String name, String help, Type type, Map<String, Object> children) {}
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final Metrics INSTANCE = new Metrics();
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).children()
+                .computeIfAbsent(labelKey(labels), key -> new Counter());
+    }
+
+    /**
+     * @param bounds upper bounds of the buckets, ascending; the +Inf bucket is added
+     * @param labels alternating label names and values
+     */
+    public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).children()
+                .computeIfAbsent(labelKey(labels), key -> new Histogram(bounds));
+    }
+
+    /**
+     * Register a value that is read when the metrics are scraped, a later registration with the same labels replaces it.
+     *
+     * @param labels alternating label names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).children().put(labelKey(labels), value);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type() + ", not a " + type);
+        }
+        return family;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format, sorted by name and labels so scrapes are easy to diff.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : new TreeMap<>(families).values()) {
+            String type = family.type().name().toLowerCase();
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(type).append('\n');
+            for (Map.Entry<String, Object> child : new TreeMap<>(family.children()).entrySet()) {
+                switch (family.type()) {
+                    case COUNTER -> sample(out, family.name(), child.getKey(), ((Counter) child.getValue()).get());
+                    case GAUGE -> sample(out, family.name(), child.getKey(), ((DoubleSupplier) child.getValue()).getAsDouble());
+                    case HISTOGRAM -> histogramSamples(out, family.name(), child.getKey(), (Histogram) child.getValue());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void histogramSamples(StringBuilder out, String name, String labels, Histogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < histogram.buckets.length; i++) {
+            cumulative += histogram.buckets[i].sum();
+            String le = i < histogram.bounds.length ? formatValue(histogram.bounds[i]) : "+Inf";
+            sample(out, name + "_bucket", labels + separator + "le=\"" + le + "\"", cumulative);
+        }
+        sample(out, name + "_sum", labels, histogram.sum.sum());
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    static String labelKey(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels come in name and value pairs");
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                switch (ch) {
+                    case '\\' -> key.append("\\\\");
+                    case '"' -> key.append("\\\"");
+                    case '\n' -> key.append("\\n");
+                    default -> key.append(ch);
+                }
+            }
+            key.append('"');
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests of one context by method and status and records how long they took.
+ * A handler that fails before sending a response is counted with status 500.
+ */
+public class MetricsFilter extends Filter {
+
+    private static final LongAdder IN_FLIGHT = new LongAdder();
+    // The server accepts any method token, anything else is counted as OTHER so clients cannot add label values
+    private static final Set<String> KNOWN_METHODS = Set.of("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH");
+
+    private final String context;
+    private final Metrics.Histogram duration;
+
+    public MetricsFilter(String context) {
+        this.context = context;
+        this.duration = Metrics.getInstance().histogram("wishkeeper_http_request_duration_seconds",
+                "Time from the start of a request until its handler returned", Metrics.LATENCY_BUCKETS, "context", context);
+    }
+
+    static long inFlight() {
+        return IN_FLIGHT.sum();
+    }
+
+    /**
+     * The request method as a label value, one of a fixed set.
+     */
+    static String methodLabel(String method) {
+        return KNOWN_METHODS.contains(method) ? method : "OTHER";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        IN_FLIGHT.increment();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            IN_FLIGHT.decrement();
+            duration.observeNanos(System.nanoTime() - start);
+            int status = exchange.getResponseCode();
+            Metrics.getInstance().counter("wishkeeper_http_requests_total", "HTTP requests handled",
+                    "context", context, "method", methodLabel(exchange.getRequestMethod()), "status", String.valueOf(status == -1 ? 500 : status))
+                    .increment();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Request metrics for " + context;
+    }
+}
@@ -0,0 +1,52 @@
+package cloud.dpgmedia;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.math.BigInteger;
+
+/**
+ * Flight Recorder event for one proof-of-work search, for both direct and asynchronous fulfillments.
+ * Call {@code begin()} before mining and {@link #end(String, double, BigInteger, long, boolean)} after.
+ */
+@Name("cloud.dpgmedia.MiningRun")
+@Label("Mining Run")
+@Category({"Wish Keeper", "Fulfillment"})
+@Description("Search for a santa hash below the target of a wish")
+@StackTrace(false)
+class MiningRunEvent extends jdk.jfr.Event {
+
+    private static final BigInteger MAX_HASH_VALUE = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    @Label("Wish Id")
+    String wishId;
+
+    @Label("Distance")
+    @Description("Distance of the beneficiary to the North Pole in km, NaN when not known")
+    double distanceKm;
+
+    @Label("Difficulty")
+    @Description("Expected number of hashes to find a valid one")
+    long difficulty;
+
+    @Label("Nonces Tried")
+    long noncesTried;
+
+    @Label("Found")
+    boolean found;
+
+    void end(String wishId, double distanceKm, BigInteger maxHashValue, long noncesTried, boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.wishId = wishId;
+            this.distanceKm = distanceKm;
+            this.difficulty = maxHashValue.signum() > 0 ? MAX_HASH_VALUE.divide(maxHashValue).longValue() : Long.MAX_VALUE;
+            this.noncesTried = noncesTried;
+            this.found = found;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cloud.dpgmedia;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the limit nearest of the candidates offered to it, in memory proportional to limit however many are offered.
+ */
+final class NearestCollector<T> {
+
+    record Candidate<T>(T item, double distanceKm) {}
+
+    private final int limit;
+    // farthest kept candidate on top, it is the one to go when a nearer one arrives
+    private final PriorityQueue<Candidate<T>> kept;
+
+    NearestCollector(int limit) {
+        this.limit = limit;
+        this.kept = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                Comparator.comparingDouble((Candidate<T> candidate) -> candidate.distanceKm()).reversed());
+    }
+
+    /**
+     * @return whether a candidate at this distance would be kept, check it before building the candidate
+     */
+    boolean accepts(double distanceKm) {
+        return kept.size() < limit || distanceKm < kept.peek().distanceKm();
+    }
+
+    void offer(T item, double distanceKm) {
+        if (!accepts(distanceKm)) {
+            return;
+        }
+        kept.add(new Candidate<>(item, distanceKm));
+        if (kept.size() > limit) {
+            kept.poll();
+        }
+    }
+
+    /**
+     * @return the kept candidates, nearest first
+     */
+    List<Candidate<T>> nearestFirst() {
+        List<Candidate<T>> sorted = new ArrayList<>(kept);
+        sorted.sort(Comparator.comparingDouble(Candidate::distanceKm));
+        return sorted;
+    }
+}
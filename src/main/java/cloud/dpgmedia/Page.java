@@ -0,0 +1,23 @@
+package cloud.dpgmedia;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * @param next cursor to pass as {@code after} for the following page, null on the last page
+ */
+public record Page<T>(List<T> items, String next) {
+
+    /**
+     * Build a page from a query that fetched one row more than the limit, the extra row only signals that more rows exist.
+     */
+    static <T> Page<T> fromLookahead(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() > limit) {
+            List<T> items = rows.subList(0, limit);
+            return new Page<>(items, cursorOf.apply(items.get(limit - 1)));
+        }
+        return new Page<>(rows, null);
+    }
+}
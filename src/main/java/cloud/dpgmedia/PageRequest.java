@@ -0,0 +1,39 @@
+package cloud.dpgmedia;
+
+import java.util.Optional;
+
+/**
+ * The {@code limit} and {@code after} query parameters of a listing endpoint.
+ *
+ * @param after cursor of the last row of the previous page, null for the first page
+ */
+public record PageRequest(String after, int limit) {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * @return empty when the request asks for the full, unpaginated listing
+     * @throws IllegalArgumentException when limit is not a number between 1 and MAX_LIMIT
+     */
+    public static Optional<PageRequest> from(QueryParams params) {
+        Optional<String> limit = params.get("limit");
+        Optional<String> after = params.get("after");
+        if (limit.isEmpty() && after.isEmpty()) {
+            return Optional.empty();
+        }
+
+        int pageSize = DEFAULT_LIMIT;
+        if (limit.isPresent()) {
+            try {
+                pageSize = Integer.parseInt(limit.get());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be an integer");
+            }
+            if (pageSize < 1 || pageSize > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+        return Optional.of(new PageRequest(after.filter(value -> !value.isEmpty()).orElse(null), pageSize));
+    }
+}
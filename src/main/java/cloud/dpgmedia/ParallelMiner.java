@@ -0,0 +1,158 @@
+package cloud.dpgmedia;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches the nonce space for a santa hash below the target on several worker threads.
+ * <p>
+ * Worker {@code i} of {@code n} tries nonces {@code i, i + n, i + 2n, ...}, so the workers
+ * together cover the same nonces as a sequential search, in roughly the same order.
+ * All workers stop as soon as one of them finds a valid hash.
+ */
+public class ParallelMiner {
+
+    // How often a worker publishes its progress and checks whether another worker already succeeded
+    private static final int PROGRESS_INTERVAL = 1_024;
+
+    public record Result(String santaHash, String blockHeader, int nonce, long hashesTried, long durationMillis) {}
+
+    private static final double[] HASH_BUCKETS = {1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+    private static final Metrics.Counter HASHES = Metrics.getInstance().counter("wishkeeper_mining_hashes_total",
+            "Nonces tried by the miners, rate() of it is the hash rate");
+    private static final Metrics.Histogram HASHES_PER_RUN = Metrics.getInstance().histogram("wishkeeper_mining_hashes_per_fulfillment",
+            "Nonces tried until a mining run found a valid hash or gave up", HASH_BUCKETS);
+    private static final Metrics.Histogram RUN_DURATION = Metrics.getInstance().histogram("wishkeeper_mining_duration_seconds",
+            "Duration of mining runs", Metrics.LATENCY_BUCKETS);
+
+    private final ExecutorService pool;
+    private final int workers;
+
+    public ParallelMiner(ExecutorService pool, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A miner needs at least one worker");
+        }
+        this.pool = pool;
+        this.workers = workers;
+    }
+
+    /**
+     * Shared miner with one worker per core, or MINING_THREADS workers when set.
+     */
+    public static ParallelMiner getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final ParallelMiner INSTANCE = create();
+
+        private static ParallelMiner create() {
+            int threads = Integer.parseInt(BasicApi.getEnvOrDefault("MINING_THREADS",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "miner-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            return new ParallelMiner(pool, threads);
+        }
+    }
+
+    /**
+     * @return mining tasks waiting for a free worker thread, when runs overlap
+     */
+    public int queuedTasks() {
+        return pool instanceof ThreadPoolExecutor executor ? executor.getQueue().size() : 0;
+    }
+
+    public Optional<Result> mine(String timestamp, BigInteger maxHashValue, String productName) {
+        return mine(timestamp, maxHashValue, productName, new LongAdder());
+    }
+
+    /**
+     * Mine a block header for the given timestamp, target and product.
+     *
+     * @param hashesTried incremented while mining, so callers can report progress
+     * @return the first valid hash found, or empty when no nonce below Integer.MAX_VALUE satisfies the target
+     */
+    public Optional<Result> mine(String timestamp, BigInteger maxHashValue, String productName, LongAdder hashesTried) {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long hashesBefore = hashesTried.sum();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Result> winner = new AtomicReference<>();
+
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            int firstNonce = worker;
+            tasks.add(() -> {
+                search(firstNonce, timestamp, maxHashValue, productName, startTime, stop, winner, hashesTried);
+                return null;
+            });
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while mining", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Mining worker failed", e.getCause());
+        } finally {
+            // Release the workers if we are leaving early
+            stop.set(true);
+            long hashes = hashesTried.sum() - hashesBefore;
+            HASHES.add(hashes);
+            HASHES_PER_RUN.observe(hashes);
+            RUN_DURATION.observeNanos(System.nanoTime() - startNanos);
+        }
+        return Optional.ofNullable(winner.get());
+    }
+
+    private void search(int firstNonce, String timestamp, BigInteger maxHashValue, String productName, long startTime,
+                        AtomicBoolean stop, AtomicReference<Result> winner, LongAdder hashesTried) {
+        SantaHashEngine engine = new SantaHashEngine(timestamp, maxHashValue, productName);
+        int sinceLastCheck = 0;
+        int checks = 0;
+        for (long nonce = firstNonce; nonce < Integer.MAX_VALUE; nonce += workers) {
+            if (engine.tryNonce((int) nonce)) {
+                hashesTried.add(sinceLastCheck + 1);
+                long duration = System.currentTimeMillis() - startTime;
+                winner.compareAndSet(null, new Result(engine.santaHash(), engine.blockHeader(), (int) nonce, hashesTried.sum(), duration));
+                stop.set(true);
+                return;
+            }
+
+            if (++sinceLastCheck == PROGRESS_INTERVAL) {
+                hashesTried.add(sinceLastCheck);
+                sinceLastCheck = 0;
+                if (stop.get() || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (firstNonce == 0 && ++checks % 100 == 0) {
+                    Log.debug("Mining in progress", "hashesTried", hashesTried.sum());
+                }
+            }
+        }
+        hashesTried.add(sinceLastCheck);
+    }
+}
@@ -3,27 +3,22 @@ package cloud.dpgmedia;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 
 public class PeopleHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        System.out.println("handling people request");
+        Log.debug("Handling people request", "method", exchange.getRequestMethod());
         String method = exchange.getRequestMethod();
 
         if ("POST".equalsIgnoreCase(method)) {
-            System.out.println("handling post request");
-            // Parse the raw JSON request body manually
-            String body = getRequestBody(exchange);
-
-            // Manually parse the JSON payload (simple parsing, assumes well-formed input)
-            Optional<RegisterPersonDto> optionalRegisterPersonDto = PeopleHandlerUtils.parseRegisterPersonDtoFrom(body);
+            // Bind the JSON request body straight from the stream
+            long parseStart = System.nanoTime();
+            Optional<RegisterPersonDto> optionalRegisterPersonDto = PeopleHandlerUtils.parseRegisterPersonDtoFrom(exchange.getRequestBody());
+            RequestTiming.record("parse", parseStart);
             if (optionalRegisterPersonDto.isPresent()) {
                 RegisterPersonDto registerPersonDto = optionalRegisterPersonDto.get();
                 Person person = new Person(
@@ -39,7 +34,7 @@ public class PeopleHandler implements HttpHandler {
                         registerPersonDto.behavior(),
                         1
                 );
-                person = new PeopleStorePostgres().registerPerson(person);
+                person = Stores.people().registerPerson(person);
 
                 // Respond with a 201 Created and the created wish
                 String response = generateJsonFromPerson(person);
@@ -55,23 +50,36 @@ public class PeopleHandler implements HttpHandler {
                 os.close();
             }
         } else if ("GET".equalsIgnoreCase(method)) {
-            // Respond with the list of all people in JSON format
-            PeopleStorePostgres postgres = new PeopleStorePostgres();
-            String response = generateJsonFromPeople(postgres.getAllPeople());
-            exchange.sendResponseHeaders(200, response.length());
-            OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
-        } else if ("PUT".equalsIgnoreCase(method)) {
-            System.out.println("handling put request");
-            // Parse the raw JSON request body manually
-            String body = getRequestBody(exchange);
+            // With limit/after query parameters respond with one keyset page, otherwise with the whole list
+            Optional<PageRequest> pageRequest;
+            try {
+                pageRequest = PageRequest.from(QueryParams.of(exchange.getRequestURI()));
+            } catch (IllegalArgumentException e) {
+                JsonResponses.sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            if (pageRequest.isPresent()) {
+                Page<Person> page;
+                try {
+                    page = Stores.people().getPeoplePage(pageRequest.get());
+                } catch (IllegalArgumentException e) {
+                    JsonResponses.sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                JsonResponses.sendPage(exchange, page, JsonResponses::writePerson);
+                return;
+            }
 
-            System.out.println("updating persondto");
-            Optional<UpdatePersonDto> optionalUpdatePersonDto = PeopleHandlerUtils.parseUpdatePersonDto(body);
-            System.out.println(optionalUpdatePersonDto.isPresent());
+            // Stream the list of all people in JSON format while rows arrive from the database
+            PeopleStore store = Stores.people();
+            JsonResponses.streamArray(exchange, generator ->
+                    store.forEachPerson(person -> JsonResponses.writePerson(generator, person)));
+        } else if ("PUT".equalsIgnoreCase(method)) {
+            // Bind the JSON request body straight from the stream
+            long parseStart = System.nanoTime();
+            Optional<UpdatePersonDto> optionalUpdatePersonDto = PeopleHandlerUtils.parseUpdatePersonDto(exchange.getRequestBody());
+            RequestTiming.record("parse", parseStart);
             if (optionalUpdatePersonDto.isPresent()) {
-                System.out.println("updating person");
                 UpdatePersonDto updatePersonDto = optionalUpdatePersonDto.get();
                 Person person = new Person(
                         Optional.of(updatePersonDto.id()),
@@ -88,7 +96,7 @@ public class PeopleHandler implements HttpHandler {
                 );
 
                 person.increaseVersion();
-                new PeopleStorePostgres().updatePerson(person);
+                Stores.people().updatePerson(person);
                 // Respond with a 200 ok to indicate success and the updated person
                 exchange.sendResponseHeaders(200, -1);
                 OutputStream os = exchange.getResponseBody();
@@ -103,34 +111,7 @@ public class PeopleHandler implements HttpHandler {
 
 
 
-    private static String getRequestBody(HttpExchange exchange) throws IOException {
-        InputStream requestBody = exchange.getRequestBody();
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] temp = new byte[1024];
-        int bytesRead;
-        while ((bytesRead = requestBody.read(temp)) != -1) {
-            buffer.write(temp, 0, bytesRead);
-        }
-
-        // Convert byte array to String using UTF-8 encoding
-        String body = new String(buffer.toByteArray(), "UTF-8");
-        return body;
-    }
-
-    private String generateJsonFromPeople(List<Person> allPeople) {
-        StringBuilder jsonArray = new StringBuilder("[");
-        for (int i = 0; i < allPeople.size(); i++) {
-            Person person = allPeople.get(i);
-            jsonArray.append(generateJsonFromPerson(person));
-            if (i < allPeople.size() - 1) {
-                jsonArray.append(", ");
-            }
-        }
-        jsonArray.append("]");
-        return jsonArray.toString();
-    }
-
-    private static String generateJsonFromPerson(Person person) {
+    static String generateJsonFromPerson(Person person) {
         try {
             return String.format(
                     "{\"id\":\"%s\", \"firstName\":\"%s\", \"lastName\":\"%s\", \"dateOfBirth\":\"%s\", \"timeOfRegistration\":\"%s\", \"behavior\":\"%s\", \"addressLocation\":{\"latitude\":%f, \"longitude\":%f}, \"version\":%d}",
@@ -1,9 +1,9 @@
 package cloud.dpgmedia;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 public class PeopleHandlerUtils {
@@ -15,123 +15,80 @@ public class PeopleHandlerUtils {
      * @return A Person object or null if the parsing fails.
      */
     public static Optional<RegisterPersonDto> parseRegisterPersonDtoFrom(String body) {
-        try {
-            // Create Jackson ObjectMapper
-            ObjectMapper objectMapper = new ObjectMapper();
-
-            // Parse the JSON string into a JsonNode tree
-            JsonNode rootNode = objectMapper.readTree(body);
-
-            // if requestbody contains id or version throw an illegal argument exception
-            if (rootNode.has("id") || rootNode.has("version")) {
-                throw new IllegalArgumentException("Request body should not contain id or version for registration");
-            }
-            // Extract necessary fields from the JSON payload
-            JsonNode firstNameNode = rootNode.path("firstName");
-            if (firstNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: firstName");
-            }
-            String firstName = firstNameNode.asText();
+        return parseRegisterPersonDto(reader -> reader.readValue(body));
+    }
 
-            JsonNode lastNameNode = rootNode.path("lastName");
-            if (lastNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: lastName");
-            }
-            String lastName = lastNameNode.asText();
+    /**
+     * Same as {@link #parseRegisterPersonDtoFrom(String)}, binding straight from the request body stream.
+     */
+    public static Optional<RegisterPersonDto> parseRegisterPersonDtoFrom(InputStream body) {
+        return parseRegisterPersonDto(reader -> reader.readValue(body));
+    }
 
-            JsonNode dateOfBirthNode = rootNode.path("dateOfBirth");
-            if (dateOfBirthNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: dateOfBirth");
-            }
-            LocalDate dateOfBirth = LocalDate.parse(dateOfBirthNode.asText());
+    public static Optional<UpdatePersonDto> parseUpdatePersonDto(String body) {
+        return parseUpdatePersonDto(reader -> reader.readValue(body));
+    }
 
-            // Parse nested addressLocation data if available
-            JsonNode locationNode = rootNode.get("addressLocation");
-            LocationDto addressLocationDto = null;
-            if (locationNode != null) {
-                double latitude = locationNode.get("latitude").asDouble();
-                double longitude = locationNode.get("longitude").asDouble();
+    public static Optional<UpdatePersonDto> parseUpdatePersonDto(InputStream body) {
+        return parseUpdatePersonDto(reader -> reader.readValue(body));
+    }
 
-                // Create Location object with latitude and longitude
-                addressLocationDto = new LocationDto(latitude, longitude);
-            }
+    @FunctionalInterface
+    private interface Binding<T> {
+        T bind(ObjectReader reader) throws IOException;
+    }
 
-            JsonNode behaviorNode = rootNode.path("behavior");
-            if (behaviorNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: behavior");
+    private static Optional<RegisterPersonDto> parseRegisterPersonDto(Binding<RegisterPersonDto> binding) {
+        try {
+            // Bind the JSON payload in one pass, the reader refuses id and version for registration
+            RegisterPersonDto registerPersonDto = binding.bind(Json.REGISTER_PERSON);
+            if (registerPersonDto == null) {
+                throw new IllegalArgumentException("Request body should be a JSON object");
             }
-            Behavior behavior = Behavior.valueOf(behaviorNode.asText().toUpperCase());
-
-            // Create and return the Person object
-            return Optional.of(new RegisterPersonDto(firstName, lastName, dateOfBirth, addressLocationDto, behavior));
+            return Optional.of(validateRegistration(registerPersonDto));
         } catch (Exception e) {
             // Handle parsing errors (e.g., malformed JSON)
-            System.err.println("Failed to parse Person from JSON body: " + e.getMessage());
+            Log.info("Failed to parse Person from JSON body", "error", e.getMessage());
             return Optional.empty();
         }
     }
 
-    public static Optional<UpdatePersonDto> parseUpdatePersonDto(String body) {
-        try {
-            // Create Jackson ObjectMapper
-            ObjectMapper objectMapper = new ObjectMapper();
-
-            // Parse the JSON string into a JsonNode tree
-            JsonNode rootNode = objectMapper.readTree(body);
-
-            // Extract necessary fields from the JSON payload
-            JsonNode idNode = rootNode.path("id");
-            if (idNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: id");
-            }
-            int id = idNode.asInt();
-
-            JsonNode firstNameNode = rootNode.path("firstName");
-            if (firstNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: firstName");
-            }
-            String firstName = firstNameNode.asText();
-
-            JsonNode lastNameNode = rootNode.path("lastName");
-            if (lastNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: lastName");
-            }
-            String lastName = lastNameNode.asText();
-
-            JsonNode dateOfBirthNode = rootNode.path("dateOfBirth");
-            if (dateOfBirthNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: dateOfBirth");
-            }
-            LocalDate dateOfBirth = LocalDate.parse(dateOfBirthNode.asText());
-
-            // Parse nested addressLocation data if available
-            JsonNode locationNode = rootNode.get("addressLocation");
-            LocationDto addressLocationDto = null;
-            if (locationNode != null) {
-                double latitude = locationNode.get("latitude").asDouble();
-                double longitude = locationNode.get("longitude").asDouble();
-
-                // Create Location object with latitude and longitude
-                addressLocationDto = new LocationDto(latitude, longitude);
-            }
-
-            JsonNode behaviorNode = rootNode.path("behavior");
-            if (behaviorNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: behavior");
-            }
-            Behavior behavior = Behavior.valueOf(behaviorNode.asText().toUpperCase());
+    /**
+     * Required fields of a registration, shared by POST /api/people and the bulk import.
+     *
+     * @throws IllegalArgumentException naming the first missing field
+     */
+    static RegisterPersonDto validateRegistration(RegisterPersonDto registerPersonDto) {
+        requirePresent(registerPersonDto.firstName(), "firstName");
+        requirePresent(registerPersonDto.lastName(), "lastName");
+        requirePresent(registerPersonDto.dateOfBirth(), "dateOfBirth");
+        requirePresent(registerPersonDto.behavior(), "behavior");
+        return registerPersonDto;
+    }
 
-            JsonNode versionNode = rootNode.path("version");
-            if (versionNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: version");
+    private static Optional<UpdatePersonDto> parseUpdatePersonDto(Binding<UpdatePersonDto> binding) {
+        try {
+            // id and version are required by the DTO itself
+            UpdatePersonDto updatePersonDto = binding.bind(Json.UPDATE_PERSON);
+            if (updatePersonDto == null) {
+                throw new IllegalArgumentException("Request body should be a JSON object");
             }
-            int version = versionNode.asInt();
+            requirePresent(updatePersonDto.firstName(), "firstName");
+            requirePresent(updatePersonDto.lastName(), "lastName");
+            requirePresent(updatePersonDto.dateOfBirth(), "dateOfBirth");
+            requirePresent(updatePersonDto.behavior(), "behavior");
 
-            return Optional.of(new UpdatePersonDto(id, firstName, lastName, dateOfBirth, addressLocationDto, behavior, version));
+            return Optional.of(updatePersonDto);
         } catch (Exception e) {
             // Handle parsing errors (e.g., malformed JSON)
-            System.err.println("Failed to parse Person from JSON body: " + e.getMessage());
+            Log.info("Failed to parse Person from JSON body", "error", e.getMessage());
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+
+    private static void requirePresent(Object value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required field: " + field);
+        }
+    }
+}
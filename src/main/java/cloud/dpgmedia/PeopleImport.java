@@ -0,0 +1,241 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads an upload of people to register, one record per line, and passes the valid ones on as they are read.
+ * <p>
+ * NDJSON lines are bound like the body of POST /api/people. CSV needs a header row naming the columns
+ * {@code firstName, lastName, dateOfBirth, latitude, longitude, behavior} in any order. Every record must
+ * have an address location within bounds and a known behavior; invalid records are counted and skipped.
+ * Only the first {@code maxErrors} rejections are kept with their reason, so a bad upload cannot grow the report without bound.
+ */
+public class PeopleImport {
+
+    static final List<String> CSV_COLUMNS = List.of("firstName", "lastName", "dateOfBirth", "latitude", "longitude", "behavior");
+
+    public enum Format {
+        NDJSON,
+        CSV;
+
+        /**
+         * Format from the Content-Type of the upload, text/csv for CSV and anything else as NDJSON.
+         */
+        static Format fromContentType(String contentType) {
+            if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv")) {
+                return CSV;
+            }
+            return NDJSON;
+        }
+    }
+
+    public record RowError(long line, String error) {}
+
+    private final Format format;
+    private final int maxErrors;
+    private final LocalDateTime timeOfRegistration = LocalDateTime.now();
+    private final List<RowError> errors = new ArrayList<>();
+    private long rejected;
+
+    public PeopleImport(Format format, int maxErrors) {
+        this.format = format;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Read the upload to the end, passing every valid person to the consumer in upload order.
+     */
+    public void forEachValid(InputStream upload, RowConsumer<Person> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(upload, StandardCharsets.UTF_8));
+        Map<String, Integer> columns = null;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = parseCsvHeader(line);
+                continue;
+            }
+            Person person;
+            try {
+                person = format == Format.CSV ? fromCsv(line, columns) : fromNdjson(line);
+            } catch (IllegalArgumentException e) {
+                reject(lineNumber, e.getMessage());
+                continue;
+            }
+            consumer.accept(person);
+        }
+    }
+
+    public long rejected() {
+        return rejected;
+    }
+
+    public List<RowError> errors() {
+        return errors;
+    }
+
+    private void reject(long line, String error) {
+        rejected++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, error));
+        }
+    }
+
+    private Person fromNdjson(String line) {
+        RegisterPersonDto dto;
+        try {
+            dto = Json.REGISTER_PERSON.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getOriginalMessage());
+        }
+        if (dto == null) {
+            throw new IllegalArgumentException("Line should be a JSON object");
+        }
+        return toPerson(dto);
+    }
+
+    private Person fromCsv(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " fields but found " + fields.size());
+        }
+        LocationDto location = new LocationDto(
+                parseDouble(fields.get(columns.get("latitude")), "latitude"),
+                parseDouble(fields.get(columns.get("longitude")), "longitude"));
+        RegisterPersonDto dto = new RegisterPersonDto(
+                emptyToNull(fields.get(columns.get("firstName"))),
+                emptyToNull(fields.get(columns.get("lastName"))),
+                parseDate(fields.get(columns.get("dateOfBirth"))),
+                location,
+                parseBehavior(fields.get(columns.get("behavior"))));
+        return toPerson(dto);
+    }
+
+    private Person toPerson(RegisterPersonDto dto) {
+        PeopleHandlerUtils.validateRegistration(dto);
+        if (dto.addressLocation() == null) {
+            throw new IllegalArgumentException("Missing required field: addressLocation");
+        }
+        // Location refuses coordinates out of bounds
+        Location location = new Location(dto.addressLocation().latitude(), dto.addressLocation().longitude());
+        return new Person(Optional.empty(), dto.firstName(), dto.lastName(), dto.dateOfBirth(), timeOfRegistration,
+                location, dto.behavior(), 1);
+    }
+
+    static Map<String, Integer> parseCsvHeader(String line) {
+        List<String> names = splitCsvLine(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            for (String column : CSV_COLUMNS) {
+                if (column.equalsIgnoreCase(names.get(i).trim())) {
+                    columns.put(column, i);
+                }
+            }
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("CSV header is missing column: " + column);
+            }
+        }
+        if (names.size() != CSV_COLUMNS.size()) {
+            throw new IllegalArgumentException("CSV header should have exactly the columns " + String.join(",", CSV_COLUMNS));
+        }
+        return columns;
+    }
+
+    /**
+     * Split one CSV line, fields may be quoted with "" as an escaped quote. Quoted line breaks are not supported.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static double parseDouble(String value, String field) {
+        if (value.isBlank()) {
+            throw new IllegalArgumentException("Missing required field: addressLocation");
+        }
+        double number;
+        try {
+            number = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " must be a number");
+        }
+        // parseDouble also reads NaN and Infinity
+        if (!Double.isFinite(number)) {
+            throw new IllegalArgumentException(field + " must be a number");
+        }
+        return number;
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("dateOfBirth must be a date like 1990-07-20");
+        }
+    }
+
+    private static Behavior parseBehavior(String value) {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return Behavior.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("behavior must be naughty or nice");
+        }
+    }
+}
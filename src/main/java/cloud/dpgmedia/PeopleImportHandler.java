@@ -0,0 +1,51 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * POST /api/people/import: register people in bulk from an NDJSON or CSV upload (Content-Type text/csv).
+ * <p>
+ * The upload is validated and copied into the database while it is being received. Invalid records are
+ * skipped and reported: {@code {"accepted":998,"rejected":2,"errors":[{"line":7,"error":"..."}]}}.
+ */
+public class PeopleImportHandler implements HttpHandler {
+
+    // Rejections reported with their reason, the rest is only counted
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    record ImportReport(long accepted, long rejected, List<PeopleImport.RowError> errors) {}
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Log.debug("Handling people import request", "method", exchange.getRequestMethod());
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        PeopleImport.Format format = PeopleImport.Format.fromContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
+        PeopleImport peopleImport = new PeopleImport(format, MAX_REPORTED_ERRORS);
+        long accepted;
+        try {
+            accepted = Stores.people().copyPeople(sink -> peopleImport.forEachValid(exchange.getRequestBody(), sink));
+        } catch (IllegalArgumentException e) {
+            // The upload as a whole is unusable, e.g. a CSV header without the expected columns
+            Log.info("Validation error", "error", e.getMessage());
+            JsonResponses.sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        String response = Json.write(new ImportReport(accepted, peopleImport.rejected(), peopleImport.errors()));
+        byte[] body = response.getBytes();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+    }
+}
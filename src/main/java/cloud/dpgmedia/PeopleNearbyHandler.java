@@ -0,0 +1,94 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Location searches over the people, nearest first, as {@code [{"distanceKm":1.2,"person":{...}}, ...]}.
+ * <ul>
+ *     <li>GET /api/people/nearby?latitude=..&longitude=..&radiusKm=..&limit=..: everyone within radiusKm, at most limit</li>
+ *     <li>GET /api/people/nearest?latitude=..&longitude=..&k=..: the k nearest people</li>
+ * </ul>
+ * limit and k default to {@value PageRequest#DEFAULT_LIMIT} and may be at most {@value PageRequest#MAX_LIMIT}.
+ */
+public class PeopleNearbyHandler implements HttpHandler {
+
+    private final boolean nearest;
+
+    /**
+     * @param nearest true to serve /api/people/nearest, false for /api/people/nearby
+     */
+    public PeopleNearbyHandler(boolean nearest) {
+        this.nearest = nearest;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Log.debug("Handling people location request", "method", exchange.getRequestMethod(), "nearest", nearest);
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        long parseStart = System.nanoTime();
+        QueryParams params = QueryParams.of(exchange.getRequestURI());
+        Location center;
+        double radiusKm;
+        int limit;
+        try {
+            center = new Location(
+                    doubleParam(params, "latitude", -90, 90),
+                    doubleParam(params, "longitude", -180, 180));
+            radiusKm = nearest ? 0 : doubleParam(params, "radiusKm", 0, GeoBounds.MAX_RADIUS_KM);
+            limit = limitParam(params, nearest ? "k" : "limit");
+        } catch (IllegalArgumentException e) {
+            JsonResponses.sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        RequestTiming.record("parse", parseStart);
+
+        List<PeopleStore.Nearby> found = nearest
+                ? Stores.people().getNearestPeople(center, limit)
+                : Stores.people().getPeopleWithinRadius(center, radiusKm, limit);
+        JsonResponses.streamArray(exchange, generator -> {
+            for (PeopleStore.Nearby nearby : found) {
+                JsonResponses.writeNearby(generator, nearby);
+            }
+        });
+    }
+
+    private static double doubleParam(QueryParams params, String name, double min, double max) {
+        String value = params.get(name).orElseThrow(() -> new IllegalArgumentException(name + " is required"));
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        // the negated range check also rejects NaN
+        if (!(number >= min && number <= max)) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+        return number;
+    }
+
+    private static int limitParam(QueryParams params, String name) {
+        String value = params.get(name).orElse(null);
+        if (value == null) {
+            return PageRequest.DEFAULT_LIMIT;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+        if (number < 1 || number > PageRequest.MAX_LIMIT) {
+            throw new IllegalArgumentException(name + " must be between 1 and " + PageRequest.MAX_LIMIT);
+        }
+        return number;
+    }
+}
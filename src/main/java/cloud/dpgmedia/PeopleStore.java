@@ -0,0 +1,85 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage of people. {@link Stores#people()} returns the implementation selected with STORE.
+ */
+public interface PeopleStore {
+
+    /**
+     * Produces the people for {@link #copyPeople(PersonSource)}, passing each one to the sink.
+     */
+    @FunctionalInterface
+    interface PersonSource {
+        void forEach(RowConsumer<Person> sink) throws IOException;
+    }
+
+    /**
+     * A person found by a location search.
+     */
+    record Nearby(Person person, double distanceKm) {}
+
+    /**
+     * @return the registered person with the id and version it was stored with
+     */
+    Person registerPerson(Person person);
+
+    /**
+     * Store the person if the stored version is one below the version of the given person.
+     *
+     * @throws RuntimeException when the person was changed in the meantime (optimistic lock)
+     */
+    void updatePerson(Person person);
+
+    /**
+     * @throws RuntimeException when there is no person with this id
+     */
+    Person getPerson(int id);
+
+    List<Person> getAllPeople();
+
+    /**
+     * One page of people ordered by id.
+     *
+     * @throws IllegalArgumentException when the cursor is not a person id
+     */
+    Page<Person> getPeoplePage(PageRequest pageRequest);
+
+    /**
+     * Pass every person to the consumer, without collecting them in a list first.
+     */
+    void forEachPerson(RowConsumer<Person> consumer) throws IOException;
+
+    /**
+     * People whose address lies within radiusKm of center, nearest first. People without an address location are never found.
+     *
+     * @param limit the most people to return, the nearest ones are kept
+     */
+    List<Nearby> getPeopleWithinRadius(Location center, double radiusKm, int limit);
+
+    /**
+     * The k people living nearest to center, nearest first.
+     * <p>
+     * Searches a small radius first and widens it four times until k people are found or the radius covers the
+     * whole earth. When a radius holds k people they are the k nearest overall, everyone outside is farther away.
+     */
+    default List<Nearby> getNearestPeople(Location center, int k) {
+        double radiusKm = 10;
+        while (true) {
+            List<Nearby> nearest = getPeopleWithinRadius(center, radiusKm, k);
+            if (nearest.size() >= k || radiusKm >= GeoBounds.MAX_RADIUS_KM) {
+                return nearest;
+            }
+            radiusKm = Math.min(radiusKm * 4, GeoBounds.MAX_RADIUS_KM);
+        }
+    }
+
+    /**
+     * Bulk load the people the source produces.
+     *
+     * @return the number of people stored
+     */
+    long copyPeople(PersonSource source) throws IOException;
+}
@@ -0,0 +1,171 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * People kept in a concurrent map ordered by id, for running without a database.
+ * <p>
+ * Stored people are private copies: callers get a copy of their own, so changing a returned person
+ * never changes the store. Updates swap in the new person only if the stored one is still the one the
+ * version check was done against, the same optimistic lock as the Postgres store.
+ * <p>
+ * Address locations are also kept in a {@link GeoGrid} for radius and nearest neighbour searches. Changes to one
+ * person's entry in the map and in the grid happen under a lock striped by id, so concurrent updates of a person
+ * move its grid entry in the same order as they changed the map.
+ */
+public class PeopleStoreInMemory implements PeopleStore {
+
+    // Power of two, so a lock is picked with a mask
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentSkipListMap<Integer, Person> people = new ConcurrentSkipListMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final GeoGrid locations = new GeoGrid();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public PeopleStoreInMemory() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Person registerPerson(Person person) {
+        Person stored = person.copy();
+        int id = sequence.incrementAndGet();
+        stored.id = Optional.of(id);
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            people.put(id, stored);
+            locations.move(id, null, stored.addressLocation);
+        } finally {
+            lock.unlock();
+        }
+        return stored.copy();
+    }
+
+    @Override
+    public void updatePerson(Person person) {
+        if (person.id.isEmpty()) {
+            throw new IllegalArgumentException("Person ID must be provided for update.");
+        }
+        int id = person.id.get();
+        Person current = people.get(id);
+        if (current == null || current.version != person.version - 1) {
+            throw new RuntimeException("Update failed due to optimistic lock (version mismatch).");
+        }
+        Person updated = person.copy();
+        updated.timeOfRegistration = current.timeOfRegistration;
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            // fails when another update replaced the person after we read it
+            if (!people.replace(id, current, updated)) {
+                throw new RuntimeException("Update failed due to optimistic lock (version mismatch).");
+            }
+            locations.move(id, current.addressLocation, updated.addressLocation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Person getPerson(int id) {
+        Person person = people.get(id);
+        if (person == null) {
+            throw new RuntimeException("Person with ID " + id + " not found.");
+        }
+        return person.copy();
+    }
+
+    private ReentrantLock lockOf(int id) {
+        return locks[id & (LOCK_STRIPES - 1)];
+    }
+
+    boolean exists(int id) {
+        return people.containsKey(id);
+    }
+
+    @Override
+    public List<Person> getAllPeople() {
+        List<Person> copies = new ArrayList<>(people.size());
+        for (Person person : people.values()) {
+            copies.add(person.copy());
+        }
+        return copies;
+    }
+
+    @Override
+    public Page<Person> getPeoplePage(PageRequest pageRequest) {
+        Integer after = null;
+        if (pageRequest.after() != null) {
+            try {
+                after = Integer.parseInt(pageRequest.after());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("after must be a person id");
+            }
+        }
+        Iterable<Person> ordered = after == null ? people.values() : people.tailMap(after, false).values();
+
+        // one extra person tells us whether there is a next page
+        List<Person> page = new ArrayList<>(pageRequest.limit() + 1);
+        for (Person person : ordered) {
+            page.add(person.copy());
+            if (page.size() > pageRequest.limit()) {
+                break;
+            }
+        }
+        return Page.fromLookahead(page, pageRequest.limit(), person -> String.valueOf(person.id.get()));
+    }
+
+    @Override
+    public void forEachPerson(RowConsumer<Person> consumer) throws IOException {
+        for (Person person : people.values()) {
+            consumer.accept(person.copy());
+        }
+    }
+
+    /**
+     * Searches the grid cells that overlap the bounding box of the circle and keeps the nearest people inside it.
+     */
+    @Override
+    public List<Nearby> getPeopleWithinRadius(Location center, double radiusKm, int limit) {
+        NearestCollector<Integer> nearest = new NearestCollector<>(limit);
+        locations.visit(GeoBounds.around(center, radiusKm), (id, latitude, longitude) -> {
+            double distance = Location.distanceKm(center.getLatitude(), center.getLongitude(), latitude, longitude);
+            if (distance <= radiusKm) {
+                nearest.offer(id, distance);
+            }
+        });
+
+        List<Nearby> found = new ArrayList<>();
+        for (NearestCollector.Candidate<Integer> candidate : nearest.nearestFirst()) {
+            Person person = people.get(candidate.item());
+            // people are never deleted, this only guards against a person indexed before it was stored
+            if (person != null) {
+                found.add(new Nearby(person.copy(), candidate.distanceKm()));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Collects the whole source before registering anyone, so like COPY a failing source stores nobody.
+     */
+    @Override
+    public long copyPeople(PersonSource source) throws IOException {
+        List<Person> received = new ArrayList<>();
+        source.forEach(received::add);
+        for (Person person : received) {
+            registerPerson(person);
+        }
+        return received.size();
+    }
+}
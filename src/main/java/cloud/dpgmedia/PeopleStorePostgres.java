@@ -1,5 +1,12 @@
 package cloud.dpgmedia;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -7,43 +14,24 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-public class PeopleStorePostgres {
+public class PeopleStorePostgres implements PeopleStore {
 
-    // Database connection details from environment variables
-    // Password-less authentication using trust/peer auth with network isolation
-    private static final String DB_HOST = getEnvOrDefault("DB_HOST", "localhost");
-    private static final String DB_PORT = getEnvOrDefault("DB_PORT", "5432");
-    private static final String DB_NAME = getEnvOrDefault("DB_NAME", "webapp_db");
-    private static final String USER = getEnvOrDefault("DB_USER", "wishkeeper");
-    private static final String PASSWORD = getEnvOrDefault("DB_PASSWORD", "");
-    private static final String URL = String.format("jdbc:postgresql://%s:%s/%s", DB_HOST, DB_PORT, DB_NAME);
+    // Rows fetched per round trip while streaming, keeps memory flat regardless of table size
+    private static final int STREAM_FETCH_SIZE = 500;
 
-    /**
-     * Get environment variable with default fallback
-     */
-    private static String getEnvOrDefault(String key, String defaultValue) {
-        String value = System.getenv(key);
-        return (value != null && !value.trim().isEmpty()) ? value : defaultValue;
-    }
+    // Bytes of COPY data collected before they are sent to the server
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
     /**
-     * Get database connection with or without password
-     * Supports password-less authentication (trust/peer auth)
+     * Borrow a connection from the shared pool, closing it returns it to the pool
      */
     private static Connection getConnection() throws SQLException {
-        if (PASSWORD.isEmpty()) {
-            // Password-less authentication (trust/peer)
-            java.util.Properties props = new java.util.Properties();
-            props.setProperty("user", USER);
-            return DriverManager.getConnection(URL, props);
-        } else {
-            // Traditional password authentication
-            return DriverManager.getConnection(URL, USER, PASSWORD);
-        }
+        return ConnectionPool.getInstance().getConnection();
     }
 
 
     // I do not like the signature yet
+    @Override
     public Person registerPerson(Person person){
         String sql = "INSERT INTO people (firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version";
@@ -86,6 +74,7 @@ public class PeopleStorePostgres {
         }
     }
 
+    @Override
     public void updatePerson(Person person) {
         String sql = """
        UPDATE people
@@ -131,19 +120,27 @@ public class PeopleStorePostgres {
             int rowsAffected = preparedStatement.executeUpdate();
 
             if (rowsAffected > 0) {
-                System.out.println("Person updated successfully.");
+                PersonCache.getInstance().invalidate(person.id.get());
+                Log.debug("Person updated", "personId", person.id.get(), "version", person.version);
             } else {
-                System.out.println("Update failed due to optimistic lock (version mismatch).");
+                Log.info("Person update failed due to optimistic lock", "personId", person.id.get(), "version", person.version);
                 throw new RuntimeException("Update failed due to optimistic lock (version mismatch).");
             }
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Updating person failed", e, "personId", person.id.orElse(null));
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    /**
+     * Served from {@link PersonCache} when possible, the cache is invalidated by {@link #updatePerson(Person)}.
+     */
+    @Override
     public Person getPerson(int id) {
+        return PersonCache.getInstance().getOrLoad(id, PeopleStorePostgres::loadPerson);
+    }
+
+    private static Person loadPerson(int id) {
         String sql = "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people WHERE id = ?";
         Person person = null;
 
@@ -182,6 +179,7 @@ public class PeopleStorePostgres {
 
         return person;
     }
+    @Override
     public List<Person> getAllPeople() {
         String sql = "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people";
         List<Person> people = new ArrayList<>();
@@ -191,22 +189,7 @@ public class PeopleStorePostgres {
              ResultSet resultSet = preparedStatement.executeQuery()) {
 
             while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String firstName = resultSet.getString("firstName");
-                String lastName = resultSet.getString("lastName");
-                LocalDate dateOfBirth = resultSet.getDate("dateOfBirth").toLocalDate();
-                LocalDateTime timeOfRegistration = resultSet.getTimestamp("timeOfRegistration").toLocalDateTime();
-
-                double latitude = resultSet.getDouble("latitude");
-                double longitude = resultSet.getDouble("longitude");
-                Location addressLocation = null;
-                if (!resultSet.wasNull()) {
-                    addressLocation = new Location(latitude, longitude);
-                }
-                Behavior behavior = Behavior.valueOf(resultSet.getString("behavior").toUpperCase());
-                int version = resultSet.getInt("version");
-
-                Person person = new Person(Optional.of(id), firstName, lastName, dateOfBirth, timeOfRegistration, addressLocation, behavior, version);
+                Person person = mapPerson(resultSet);
 
                 // Add the person to the list
                 people.add(person);
@@ -220,4 +203,183 @@ public class PeopleStorePostgres {
         return people;
     }
 
-}
\ No newline at end of file
+    /**
+     * One page of people ordered by id, seeking past the cursor on the primary key index instead of scanning the table.
+     *
+     * @throws IllegalArgumentException when the cursor is not a person id
+     */
+    @Override
+    public Page<Person> getPeoplePage(PageRequest pageRequest) {
+        Integer after = null;
+        if (pageRequest.after() != null) {
+            try {
+                after = Integer.parseInt(pageRequest.after());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("after must be a person id");
+            }
+        }
+        String sql = after == null
+                ? "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people ORDER BY id LIMIT ?"
+                : "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people WHERE id > ? ORDER BY id LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            int index = 1;
+            if (after != null) {
+                preparedStatement.setInt(index++, after);
+            }
+            // one extra row tells us whether there is a next page
+            preparedStatement.setInt(index, pageRequest.limit() + 1);
+
+            List<Person> people = new ArrayList<>(pageRequest.limit() + 1);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    people.add(mapPerson(resultSet));
+                }
+            }
+            return Page.fromLookahead(people, pageRequest.limit(), person -> String.valueOf(person.id.get()));
+        } catch (SQLException e) {
+            Log.error("Reading people page failed", e, "after", pageRequest.after());
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stream every person to the consumer through a server-side cursor, without loading the table into memory.
+     */
+    @Override
+    public void forEachPerson(RowConsumer<Person> consumer) throws IOException {
+        String sql = "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people";
+
+        try (Connection connection = getConnection()) {
+            // Postgres only honours the fetch size inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(mapPerson(resultSet));
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            Log.error("Streaming people failed", e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Selects the people inside the bounding box of the circle, which the (latitude, longitude) index serves as a
+     * range scan, and keeps the nearest of them that are within the exact haversine distance.
+     */
+    @Override
+    public List<Nearby> getPeopleWithinRadius(Location center, double radiusKm, int limit) {
+        GeoBounds bounds = GeoBounds.around(center, radiusKm);
+        String sql = "SELECT id, firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version FROM people "
+                + "WHERE latitude BETWEEN ? AND ? AND "
+                + (bounds.crossesAntimeridian() ? "(longitude >= ? OR longitude <= ?)" : "longitude BETWEEN ? AND ?");
+
+        try (Connection connection = getConnection()) {
+            // Postgres only honours the fetch size inside a transaction, a wide radius may match most of the table
+            connection.setAutoCommit(false);
+            NearestCollector<Person> nearest = new NearestCollector<>(limit);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setDouble(1, bounds.minLatitude());
+                preparedStatement.setDouble(2, bounds.maxLatitude());
+                preparedStatement.setDouble(3, bounds.minLongitude());
+                preparedStatement.setDouble(4, bounds.maxLongitude());
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        double distance = Location.distanceKm(center.getLatitude(), center.getLongitude(),
+                                resultSet.getDouble("latitude"), resultSet.getDouble("longitude"));
+                        // only map the rows that make it into the result
+                        if (distance <= radiusKm && nearest.accepts(distance)) {
+                            nearest.offer(mapPerson(resultSet), distance);
+                        }
+                    }
+                }
+            }
+            connection.commit();
+
+            List<Nearby> found = new ArrayList<>();
+            for (NearestCollector.Candidate<Person> candidate : nearest.nearestFirst()) {
+                found.add(new Nearby(candidate.item(), candidate.distanceKm()));
+            }
+            return found;
+        } catch (SQLException e) {
+            Log.error("Searching people by location failed", e, "radiusKm", radiusKm);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Register people in bulk with COPY ... FROM STDIN. Rows are encoded and sent while the source produces
+     * them, so an upload never has to fit in memory. COPY is all or nothing: if the source fails no one is inserted.
+     *
+     * @return the number of people inserted
+     */
+    @Override
+    public long copyPeople(PersonSource source) throws IOException {
+        String sql = "COPY people (firstName, lastName, dateOfBirth, timeOfRegistration, latitude, longitude, behavior, version) "
+                + "FROM STDIN WITH (FORMAT csv)";
+
+        try (Connection connection = getConnection()) {
+            PGCopyOutputStream copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            try {
+                Writer writer = new OutputStreamWriter(copy, StandardCharsets.UTF_8);
+                source.forEach(person -> writer.write(toCopyRow(person)));
+                writer.flush();
+                long inserted = copy.endCopy();
+                Log.info("Imported people", "people", inserted);
+                return inserted;
+            } catch (IOException | RuntimeException e) {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            Log.error("Importing people failed", e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    // One line of COPY csv input in the column order of copyPeople, text is always quoted
+    static String toCopyRow(Person person) {
+        return quote(person.firstName) + ','
+                + quote(person.lastName) + ','
+                + person.dateOfBirth + ','
+                + person.timeOfRegistration + ','
+                + person.addressLocation.getLatitude() + ','
+                + person.addressLocation.getLongitude() + ','
+                + person.behavior.name().toLowerCase() + ','
+                + person.version + '\n';
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static Person mapPerson(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        String firstName = resultSet.getString("firstName");
+        String lastName = resultSet.getString("lastName");
+        LocalDate dateOfBirth = resultSet.getDate("dateOfBirth").toLocalDate();
+        LocalDateTime timeOfRegistration = resultSet.getTimestamp("timeOfRegistration").toLocalDateTime();
+
+        double latitude = resultSet.getDouble("latitude");
+        double longitude = resultSet.getDouble("longitude");
+        Location addressLocation = null;
+        if (!resultSet.wasNull()) {
+            addressLocation = new Location(latitude, longitude);
+        }
+        Behavior behavior = Behavior.valueOf(resultSet.getString("behavior").toUpperCase());
+        int version = resultSet.getInt("version");
+
+        return new Person(Optional.of(id), firstName, lastName, dateOfBirth, timeOfRegistration, addressLocation, behavior, version);
+    }
+
+}
@@ -30,4 +30,8 @@ public class Person {
         this.version++;
     }
 
+    public Person copy() {
+        return new Person(id, firstName, lastName, dateOfBirth, timeOfRegistration, addressLocation, behavior, version);
+    }
+
 }
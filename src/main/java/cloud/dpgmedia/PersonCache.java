@@ -0,0 +1,164 @@
+package cloud.dpgmedia;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * In-process read-through cache of people by id.
+ * <p>
+ * The cache is split into segments, each an access-ordered LRU map behind its own lock, so lookups
+ * for different people rarely contend. Entries expire after a TTL. {@link #invalidate(int)} drops
+ * an entry after its row was updated; a load that was already in flight when the invalidation
+ * happened is not cached, and an entry is never replaced by one with a lower version.
+ * <p>
+ * Callers get their own copy of the cached person, so changing it does not change the cache.
+ */
+public class PersonCache {
+
+    private static final int SEGMENTS = 16;
+
+    public record CacheStats(long hits, long misses, long evictions, long expirations, long invalidations, int size) {}
+
+    private record Entry(Person person, long expiresAtNanos) {}
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final boolean enabled;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxSize   upper bound on cached people, 0 disables caching
+     * @param ttlMillis how long an entry may be served after it was loaded
+     */
+    public PersonCache(int maxSize, long ttlMillis) {
+        this.enabled = maxSize > 0 && ttlMillis > 0;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.segments = new Segment[SEGMENTS];
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public static PersonCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final PersonCache INSTANCE = new PersonCache(
+                Integer.parseInt(BasicApi.getEnvOrDefault("PERSON_CACHE_MAX_SIZE", "10000")),
+                Long.parseLong(BasicApi.getEnvOrDefault("PERSON_CACHE_TTL_MS", "60000")));
+    }
+
+    /**
+     * Return the cached person, or load, cache and return it on a miss.
+     * Exceptions from the loader (e.g. person not found) are passed on and nothing is cached.
+     */
+    public Person getOrLoad(int id, IntFunction<Person> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        Segment segment = segmentFor(id);
+        long epoch;
+        segment.lock.lock();
+        try {
+            Entry entry = segment.entries.get(id);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos < 0) {
+                    hits.increment();
+                    return entry.person.copy();
+                }
+                segment.entries.remove(id);
+                expirations.increment();
+            }
+            epoch = segment.invalidationEpoch;
+        } finally {
+            segment.lock.unlock();
+        }
+
+        // Load outside the lock so a slow query does not block the rest of the segment
+        misses.increment();
+        Person loaded = loader.apply(id);
+        if (loaded == null) {
+            return null;
+        }
+
+        segment.lock.lock();
+        try {
+            // An invalidation while we were loading may mean we read the row before it was updated
+            if (segment.invalidationEpoch == epoch) {
+                Entry current = segment.entries.get(id);
+                if (current == null || current.person.version <= loaded.version) {
+                    segment.entries.put(id, new Entry(loaded.copy(), System.nanoTime() + ttlNanos));
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop the cached person, call after the row changed.
+     */
+    public void invalidate(int id) {
+        if (!enabled) {
+            return;
+        }
+        Segment segment = segmentFor(id);
+        segment.lock.lock();
+        try {
+            segment.entries.remove(id);
+            segment.invalidationEpoch++;
+            invalidations.increment();
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum(), size);
+    }
+
+    private Segment segmentFor(int id) {
+        // Spread sequential ids over the segments
+        int hash = id * 0x9E3779B9;
+        return segments[(hash >>> 16) & (SEGMENTS - 1)];
+    }
+
+    private class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<Integer, Entry> entries;
+        long invalidationEpoch;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
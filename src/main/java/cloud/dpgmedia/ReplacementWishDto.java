@@ -0,0 +1,9 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Body of PUT /api/wishreplace, validated into a {@link ReplacementWish}.
+ */
+public record ReplacementWishDto(String id, String productName, JsonNode quantity, JsonNode beneficiaryId,
+                                 String idOfWishToBeReplaced) {}
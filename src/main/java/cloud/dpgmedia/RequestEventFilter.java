@@ -0,0 +1,87 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Commits an {@link HttpRequestEvent} per request while Flight Recorder has the event enabled.
+ * When it is off the exchange is passed on untouched, nothing is counted.
+ */
+public class RequestEventFilter extends Filter {
+
+    private final String context;
+
+    public RequestEventFilter(String context) {
+        this.context = context;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        HttpRequestEvent event = new HttpRequestEvent();
+        if (!event.isEnabled()) {
+            chain.doFilter(exchange);
+            return;
+        }
+        CountingExchange counting = new CountingExchange(exchange);
+        event.begin();
+        try {
+            chain.doFilter(counting);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.context = context;
+                event.method = MetricsFilter.methodLabel(exchange.getRequestMethod());
+                int status = exchange.getResponseCode();
+                event.status = status == -1 ? 500 : status;
+                event.responseBytes = counting.bytes();
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Flight Recorder events for " + context;
+    }
+
+    /**
+     * Counts the bytes the handler writes to the response body.
+     */
+    private static final class CountingExchange extends ForwardingExchange {
+        private OutputStream body;
+        private long bytes;
+
+        CountingExchange(HttpExchange exchange) {
+            super(exchange);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            // handlers fetch the body more than once, count all writes on one stream
+            if (body == null) {
+                body = new FilterOutputStream(exchange.getResponseBody()) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        bytes += len;
+                    }
+                };
+            }
+            return body;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package cloud.dpgmedia;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Where the time of one request went, as named spans: parsing, each store method, mining and so on.
+ * Rendered as a Server-Timing header, e.g. {@code parse;dur=0.21, storeWishWithinQuota;dur=1.85}.
+ * <p>
+ * {@link ServerTimingFilter} makes a timing current for the thread that handles the request, code on
+ * that thread adds spans with {@link #record(String, long)}, which does nothing outside a request, e.g. on
+ * the fulfillment job workers. A span that is recorded several times, like a store method called in a
+ * loop, is reported once with the summed duration and the number of calls.
+ */
+final class RequestTiming {
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos;
+    private String[] names = new String[8];
+    private long[] nanos = new long[8];
+    private int[] calls = new int[8];
+    private int size;
+
+    RequestTiming(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    static void setCurrent(RequestTiming timing) {
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+    }
+
+    /**
+     * Add the time since startNanos to the span of the current request, if there is one.
+     *
+     * @param name a token without spaces, commas or semicolons
+     */
+    static void record(String name, long startNanos) {
+        recordNanos(name, System.nanoTime() - startNanos);
+    }
+
+    static void recordNanos(String name, long durationNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(name, durationNanos);
+        }
+    }
+
+    void add(String name, long durationNanos) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                nanos[i] += durationNanos;
+                calls[i]++;
+                return;
+            }
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            nanos = Arrays.copyOf(nanos, size * 2);
+            calls = Arrays.copyOf(calls, size * 2);
+        }
+        names[size] = name;
+        nanos[size] = durationNanos;
+        calls[size] = 1;
+        size++;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * The spans in the order they were first recorded, followed by the total so far.
+     */
+    String header() {
+        StringBuilder header = new StringBuilder(32 * (size + 1));
+        for (int i = 0; i < size; i++) {
+            appendMetric(header, names[i], nanos[i]);
+            if (calls[i] > 1) {
+                header.append(";desc=\"").append(calls[i]).append(" calls\"");
+            }
+            header.append(", ");
+        }
+        appendMetric(header, "total", elapsedNanos());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long durationNanos) {
+        // Server-Timing durations are milliseconds
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", durationNanos / 1e6));
+    }
+}
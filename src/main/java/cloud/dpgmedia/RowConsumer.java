@@ -0,0 +1,11 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time while a store streams a query result.
+ */
+@FunctionalInterface
+public interface RowConsumer<T> {
+    void accept(T row) throws IOException;
+}
@@ -0,0 +1,124 @@
+package cloud.dpgmedia;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Allocation-free santa hash computation for a single mining worker.
+ * <p>
+ * The block header is {@code timestamp + %064x(maxHashValue) + nonce + productName}, exactly as in
+ * {@link WishFulfillmentHandler}. The constant parts are encoded once; per nonce only the digits are
+ * rewritten in place, both SHA-256 passes write into reused arrays and the digest is compared to the
+ * target as raw bytes. Produces the same hashes as {@link HashCollision#getSantaHash(String)}.
+ * <p>
+ * Instances are not thread-safe, every worker needs its own.
+ */
+public class SantaHashEngine {
+
+    private static final int HASH_LENGTH = 32;
+    private static final int MAX_NONCE_DIGITS = 10;
+
+    private final MessageDigest digest;
+    private final byte[] header;
+    private final int prefixLength;
+    private final byte[] suffix;
+    private final byte[] target;
+    private final byte[] firstHash = new byte[HASH_LENGTH];
+    private final byte[] santaHash = new byte[HASH_LENGTH];
+    private int nonceDigits;
+    private int headerLength;
+
+    public SantaHashEngine(String timestamp, BigInteger maxHashValue, String productName) {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] prefix = (timestamp + String.format("%064x", maxHashValue)).getBytes(StandardCharsets.UTF_8);
+        this.prefixLength = prefix.length;
+        this.suffix = productName.getBytes(StandardCharsets.UTF_8);
+        this.header = Arrays.copyOf(prefix, prefix.length + MAX_NONCE_DIGITS + suffix.length);
+        this.target = toHashBytes(maxHashValue);
+    }
+
+    /**
+     * Hash the block header for this nonce.
+     *
+     * @return true when the santa hash is strictly below the target
+     */
+    public boolean tryNonce(int nonce) {
+        writeNonce(nonce);
+        try {
+            digest.update(header, 0, headerLength);
+            digest.digest(firstHash, 0, HASH_LENGTH);
+            digest.update(firstHash, 0, HASH_LENGTH);
+            digest.digest(santaHash, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+        return Arrays.compareUnsigned(santaHash, target) < 0;
+    }
+
+    /**
+     * Hex encoded santa hash of the last nonce tried.
+     */
+    public String santaHash() {
+        return HexFormat.of().formatHex(santaHash);
+    }
+
+    /**
+     * Block header of the last nonce tried.
+     */
+    public String blockHeader() {
+        return new String(header, 0, headerLength, StandardCharsets.UTF_8);
+    }
+
+    private void writeNonce(int nonce) {
+        if (nonce < 0) {
+            throw new IllegalArgumentException("Nonce cannot be negative");
+        }
+        int digits = digitCount(nonce);
+        if (digits != nonceDigits) {
+            // The product name moves whenever the nonce gains a digit
+            System.arraycopy(suffix, 0, header, prefixLength + digits, suffix.length);
+            nonceDigits = digits;
+            headerLength = prefixLength + digits + suffix.length;
+        }
+        int position = prefixLength + digits;
+        int remaining = nonce;
+        do {
+            header[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+    }
+
+    private static int digitCount(int value) {
+        int digits = 1;
+        for (long bound = 10; bound <= value; bound *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    // Big-endian, left padded to the 32 bytes of a SHA-256 digest
+    private static byte[] toHashBytes(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        int significant = bytes.length;
+        int offset = 0;
+        while (significant > HASH_LENGTH && bytes[offset] == 0) {
+            offset++;
+            significant--;
+        }
+        if (significant > HASH_LENGTH) {
+            throw new IllegalArgumentException("Target does not fit in a 256 bit hash");
+        }
+        byte[] padded = new byte[HASH_LENGTH];
+        System.arraycopy(bytes, offset, padded, HASH_LENGTH - significant, significant);
+        return padded;
+    }
+}
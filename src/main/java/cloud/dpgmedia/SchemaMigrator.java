@@ -0,0 +1,259 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the SQL migrations in {@code src/main/resources/db/migration} at startup.
+ * <p>
+ * Migrations are named {@code V<version>__<description>.sql} and listed in {@link #MIGRATIONS}.
+ * Each one runs in its own transaction and is recorded in {@code schema_migrations} with a SHA-256
+ * checksum of its script. A migration that was already applied is skipped, unless its script has
+ * changed since, which stops startup: add a new migration instead of editing an applied one.
+ * A Postgres advisory lock keeps instances starting at the same time from migrating concurrently.
+ * <p>
+ * A script whose first line is {@value #NO_TRANSACTION} runs outside a transaction, for statements Postgres
+ * refuses inside one, like {@code CREATE INDEX CONCURRENTLY}. Its statements are split at semicolons and run
+ * one by one, and the migration is recorded once all of them succeeded. Such a script must be safe to run
+ * again after it failed halfway, e.g. by using {@code IF NOT EXISTS}. An index that a failed concurrent
+ * build left behind as INVALID would be skipped by {@code IF NOT EXISTS}, so it is dropped first.
+ */
+public class SchemaMigrator {
+
+    // Ascending by version, append new migrations at the end
+    static final List<String> MIGRATIONS = List.of(
+            "V1__baseline.sql",
+            "V2__query_indexes.sql",
+            "V3__fulfillment_proofs.sql");
+
+    private static final String LOCATION = "db/migration/";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    static final String NO_TRANSACTION = "-- migration: no-transaction";
+    private static final Pattern CONCURRENT_INDEX = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+IF\\s+NOT\\s+EXISTS\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    // Earlier checksums of migrations that were rewritten without changing the resulting schema, they are
+    // accepted and replaced by the current one. V2 only moved to CREATE INDEX CONCURRENTLY.
+    private static final Map<Integer, Set<String>> EQUIVALENT_CHECKSUMS = Map.of(
+            2, Set.of("b40fd6c117d3713a16a82529f39855cc1d8e5aebd35ad61f70aaed49a2dfe29c"));
+
+    // Arbitrary application wide key for pg_advisory_lock
+    private static final long LOCK_KEY = 7_412_093_556_001L;
+
+    record Migration(int version, String description, String script, String checksum) {
+
+        boolean transactional() {
+            return !script.startsWith(NO_TRANSACTION);
+        }
+
+        /**
+         * The statements of the script without comments, for running them one by one.
+         */
+        List<String> statements() {
+            StringBuilder code = new StringBuilder();
+            for (String line : script.split("\n")) {
+                if (!line.trim().startsWith("--")) {
+                    code.append(line).append('\n');
+                }
+            }
+            List<String> statements = new ArrayList<>();
+            for (String statement : code.toString().split(";")) {
+                if (!statement.isBlank()) {
+                    statements.add(statement.trim());
+                }
+            }
+            return statements;
+        }
+
+        static Migration load(String fileName) {
+            Matcher matcher = FILE_NAME.matcher(fileName);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Migration " + fileName + " does not match V<version>__<description>.sql");
+            }
+            String script;
+            try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(LOCATION + fileName)) {
+                if (in == null) {
+                    throw new IllegalStateException("Migration " + fileName + " not found on the classpath");
+                }
+                // Normalise line endings so a checkout with CRLF does not look like an edited migration
+                script = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read migration " + fileName, e);
+            }
+            return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), script, sha256(script));
+        }
+    }
+
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public SchemaMigrator(ConnectionPool.ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Apply all pending migrations.
+     *
+     * @return the number of migrations applied
+     */
+    public int migrate() throws SQLException {
+        List<Migration> migrations = loadMigrations();
+        int appliedNow = 0;
+
+        try (Connection connection = connections.create();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            try {
+                statement.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_migrations (
+                            version INTEGER PRIMARY KEY,
+                            description VARCHAR(255) NOT NULL,
+                            checksum VARCHAR(64) NOT NULL,
+                            appliedAt TIMESTAMP NOT NULL DEFAULT now()
+                        )""");
+                Map<Integer, String> applied = appliedChecksums(connection);
+
+                for (Migration migration : migrations) {
+                    String checksum = applied.get(migration.version());
+                    if (checksum == null) {
+                        if (migration.transactional()) {
+                            apply(connection, migration);
+                        } else {
+                            applyWithoutTransaction(connection, migration);
+                        }
+                        appliedNow++;
+                    } else if (EQUIVALENT_CHECKSUMS.getOrDefault(migration.version(), Set.of()).contains(checksum)) {
+                        updateChecksum(connection, migration);
+                    } else if (!checksum.equals(migration.checksum())) {
+                        throw new IllegalStateException("Migration V" + migration.version() + " (" + migration.description()
+                                + ") was changed after it was applied, expected checksum " + checksum + " but found " + migration.checksum());
+                    }
+                }
+                int latest = migrations.get(migrations.size() - 1).version();
+                applied.keySet().stream().filter(version -> version > latest).forEach(version ->
+                        Log.warn("Database has a migration this version of the application does not know", "version", version));
+            } finally {
+                statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        }
+        Log.info("Schema is up to date", "appliedMigrations", appliedNow);
+        return appliedNow;
+    }
+
+    static List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>(MIGRATIONS.size());
+        for (String fileName : MIGRATIONS) {
+            Migration migration = Migration.load(fileName);
+            if (!migrations.isEmpty() && migration.version() <= migrations.get(migrations.size() - 1).version()) {
+                throw new IllegalStateException("Migration " + fileName + " is out of order");
+            }
+            migrations.add(migration);
+        }
+        return migrations;
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt("version"), resultSet.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        Log.info("Applying migration", "version", migration.version(), "description", migration.description());
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(migration.script());
+            record(connection, migration);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration V" + migration.version() + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void applyWithoutTransaction(Connection connection, Migration migration) throws SQLException {
+        Log.info("Applying migration without a transaction", "version", migration.version(), "description", migration.description());
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : migration.statements()) {
+                Matcher index = CONCURRENT_INDEX.matcher(sql);
+                if (index.find()) {
+                    dropIfInvalid(connection, index.group(1));
+                }
+                statement.execute(sql);
+            }
+            record(connection, migration);
+        } catch (SQLException e) {
+            throw new SQLException("Migration V" + migration.version() + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drop an index that an interrupted or failed CREATE INDEX CONCURRENTLY left behind, so it is built again.
+     */
+    private static void dropIfInvalid(Connection connection, String indexName) throws SQLException {
+        // to_regclass resolves the name on the search path, like the CREATE INDEX does
+        try (PreparedStatement invalid = connection.prepareStatement(
+                "SELECT 1 FROM pg_index WHERE indexrelid = to_regclass(?) AND NOT indisvalid")) {
+            invalid.setString(1, indexName);
+            try (ResultSet resultSet = invalid.executeQuery()) {
+                if (!resultSet.next()) {
+                    return;
+                }
+            }
+        }
+        Log.warn("Dropping invalid index left by a failed concurrent build", "index", indexName);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        }
+    }
+
+    private static void record(Connection connection, Migration migration) throws SQLException {
+        try (PreparedStatement record = connection.prepareStatement(
+                "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.setString(3, migration.checksum());
+            record.executeUpdate();
+        }
+    }
+
+    private static void updateChecksum(Connection connection, Migration migration) throws SQLException {
+        Log.info("Updating checksum of an equivalent migration", "version", migration.version());
+        try (PreparedStatement update = connection.prepareStatement("UPDATE schema_migrations SET checksum = ? WHERE version = ?")) {
+            update.setString(1, migration.checksum());
+            update.setInt(2, migration.version());
+            update.executeUpdate();
+        }
+    }
+
+    private static String sha256(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package cloud.dpgmedia;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+/**
+ * Times each request with a {@link RequestTiming} and sends its spans in a Server-Timing header.
+ * <p>
+ * The header goes out with the status line, so it holds what happened before the handler started its response.
+ * Writing the body is recorded as the {@code write} span afterwards. Requests slower than
+ * SERVER_TIMING_LOG_THRESHOLD_MS are logged with all spans including {@code write}; the default of -1 logs none.
+ * SERVER_TIMING=false leaves the header out, e.g. when clients should not see server internals.
+ */
+public class ServerTimingFilter extends Filter {
+
+    private static final boolean HEADER_ENABLED = Boolean.parseBoolean(BasicApi.getEnvOrDefault("SERVER_TIMING", "true"));
+    private static final long LOG_THRESHOLD_NANOS = Long.parseLong(BasicApi.getEnvOrDefault("SERVER_TIMING_LOG_THRESHOLD_MS", "-1")) * 1_000_000;
+
+    private final String context;
+
+    public ServerTimingFilter(String context) {
+        this.context = context;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        TimedExchange timed = new TimedExchange(exchange, timing);
+        RequestTiming.setCurrent(timing);
+        try {
+            chain.doFilter(timed);
+        } finally {
+            RequestTiming.setCurrent(null);
+            if (timed.headersSentNanos != 0) {
+                timing.add("write", System.nanoTime() - timed.headersSentNanos);
+            }
+            if (LOG_THRESHOLD_NANOS >= 0 && timing.elapsedNanos() > LOG_THRESHOLD_NANOS) {
+                Log.info("Slow request", "context", context, "method", exchange.getRequestMethod(),
+                        "status", exchange.getResponseCode(), "serverTiming", timing.header());
+            }
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Server-Timing for " + context;
+    }
+
+    /**
+     * Adds the Server-Timing header just before the response headers are sent.
+     */
+    private static final class TimedExchange extends ForwardingExchange {
+        private final RequestTiming timing;
+        private long headersSentNanos;
+
+        TimedExchange(HttpExchange exchange, RequestTiming timing) {
+            super(exchange);
+            this.timing = timing;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (HEADER_ENABLED) {
+                exchange.getResponseHeaders().set("Server-Timing", timing.header());
+            }
+            headersSentNanos = System.nanoTime();
+            exchange.sendResponseHeaders(rCode, responseLength);
+        }
+    }
+}
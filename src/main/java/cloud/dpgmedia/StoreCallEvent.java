@@ -0,0 +1,34 @@
+package cloud.dpgmedia;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one call into a store, committed by {@link StoreMetrics}.
+ */
+@Name("cloud.dpgmedia.StoreCall")
+@Label("Store Call")
+@Category({"Wish Keeper", "Store"})
+@Description("A call into a wish, people or proof store, for Postgres the JDBC work")
+@StackTrace(false)
+class StoreCallEvent extends jdk.jfr.Event {
+
+    @Label("Store Class")
+    String storeClass;
+
+    @Label("Method")
+    String method;
+
+    @Label("Rows")
+    @Description("Rows returned, streamed or imported, -1 when the method returns none")
+    long rows;
+
+    @Label("Connection Acquire Time")
+    @Description("Time spent waiting for pooled database connections during the call")
+    @Timespan(Timespan.NANOSECONDS)
+    long connectionAcquireTime;
+}
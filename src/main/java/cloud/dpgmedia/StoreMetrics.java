@@ -0,0 +1,131 @@
+package cloud.dpgmedia;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps a store so every call is timed per method. For the Postgres stores that is the time spent on
+ * JDBC, including waiting for a pooled connection. Streaming methods like forEachWish include the time
+ * the consumer took to write each row.
+ * <p>
+ * The calls also show up as spans in the Server-Timing header of the request that made them, see {@link RequestTiming},
+ * and as {@link StoreCallEvent}s while Flight Recorder has that event enabled.
+ */
+final class StoreMetrics implements InvocationHandler {
+
+    private record MethodMetrics(Metrics.Histogram duration, Metrics.Counter errors) {}
+
+    private final Object target;
+    private final String store;
+    private final Map<Method, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private StoreMetrics(Object target, String store) {
+        this.target = target;
+        this.store = store;
+    }
+
+    /**
+     * @param store label of the store in the metrics, e.g. "wishes"
+     */
+    static <T> T timed(Class<T> type, T target, String store) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new StoreMetrics(target, store)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+        MethodMetrics metrics = methods.computeIfAbsent(method, this::register);
+        StoreCallEvent event = new StoreCallEvent();
+        long[] streamedRows = null;
+        ConnectionPool.AcquireTimer acquireTimer = null;
+        if (event.isEnabled()) {
+            streamedRows = countRows(args);
+            acquireTimer = ConnectionPool.timeAcquires();
+            event.begin();
+        }
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = method.invoke(target, args);
+            return result;
+        } catch (InvocationTargetException e) {
+            metrics.errors().increment();
+            throw e.getCause();
+        } finally {
+            long duration = System.nanoTime() - start;
+            metrics.duration().observeNanos(duration);
+            // a span per store method in the Server-Timing header of the current request
+            RequestTiming.recordNanos(method.getName(), duration);
+            if (acquireTimer != null) {
+                acquireTimer.close();
+                commit(event, method, result, streamedRows[0], acquireTimer.nanos());
+            }
+        }
+    }
+
+    /**
+     * Replace a row consumer argument by one that counts the streamed rows.
+     *
+     * @return the counter, -1 while no rows are streamed
+     */
+    @SuppressWarnings("unchecked")
+    private static long[] countRows(Object[] args) {
+        long[] rows = {-1};
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] instanceof RowConsumer<?> consumer) {
+                    RowConsumer<Object> rowConsumer = (RowConsumer<Object>) consumer;
+                    rows[0] = 0;
+                    args[i] = (RowConsumer<Object>) row -> {
+                        rows[0]++;
+                        rowConsumer.accept(row);
+                    };
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void commit(StoreCallEvent event, Method method, Object result, long streamedRows, long acquireNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.storeClass = target.getClass().getSimpleName();
+            event.method = method.getName();
+            event.rows = streamedRows >= 0 ? streamedRows : rowsOf(result);
+            event.connectionAcquireTime = acquireNanos;
+            event.commit();
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        } else if (result instanceof Page<?> page) {
+            return page.items().size();
+        } else if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        } else if (result instanceof Long count) {
+            return count;
+        } else if (result != null) {
+            return 1;
+        }
+        return -1;
+    }
+
+    private MethodMetrics register(Method method) {
+        Metrics metrics = Metrics.getInstance();
+        return new MethodMetrics(
+                metrics.histogram("wishkeeper_store_call_duration_seconds", "Time spent in store calls, for Postgres the JDBC time",
+                        Metrics.LATENCY_BUCKETS, "store", store, "method", method.getName()),
+                metrics.counter("wishkeeper_store_call_errors_total", "Store calls that threw",
+                        "store", store, "method", method.getName()));
+    }
+}
@@ -0,0 +1,90 @@
+package cloud.dpgmedia;
+
+import java.util.Optional;
+
+/**
+ * The stores the handlers use, picked once at startup with the STORE environment variable:
+ * {@code postgres} (default) keeps everything in the database, {@code memory} keeps everything in this
+ * process and needs no database at all, which loses all data on restart.
+ * <p>
+ * With WISH_WRITE_BEHIND the Postgres wish store commits API inserts in groups, see {@link WishStoreWriteBehind}.
+ */
+public final class Stores {
+
+    public enum Kind {
+        POSTGRES, MEMORY;
+
+        static Kind fromName(String name) {
+            for (Kind kind : values()) {
+                if (kind.name().equalsIgnoreCase(name)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Unknown STORE: " + name + " (expected postgres or memory)");
+        }
+    }
+
+    private Stores() {
+    }
+
+    public static Kind kind() {
+        return Holder.KIND;
+    }
+
+    public static WishStore wishes() {
+        return Holder.WISHES;
+    }
+
+    public static PeopleStore people() {
+        return Holder.PEOPLE;
+    }
+
+    public static FulfillmentProofStore proofs() {
+        return Holder.PROOFS;
+    }
+
+    /**
+     * The group commit queue in front of the wish store, when WISH_WRITE_BEHIND is on.
+     */
+    public static Optional<WishStoreWriteBehind> writeBehind() {
+        return Optional.ofNullable(Holder.WRITE_BEHIND);
+    }
+
+    private static class Holder {
+        private static final Kind KIND = Kind.fromName(BasicApi.getEnvOrDefault("STORE", "postgres"));
+        private static final PeopleStore PEOPLE;
+        private static final WishStore WISHES;
+        private static final FulfillmentProofStore PROOFS;
+        private static final WishStoreWriteBehind WRITE_BEHIND;
+
+        static {
+            PeopleStore people;
+            WishStore wishes;
+            FulfillmentProofStore proofs;
+            if (KIND == Kind.MEMORY) {
+                PeopleStoreInMemory inMemory = new PeopleStoreInMemory();
+                people = inMemory;
+                wishes = new WishStoreInMemory(inMemory::exists);
+                proofs = new FulfillmentProofStoreInMemory();
+            } else {
+                people = new PeopleStorePostgres();
+                wishes = Boolean.parseBoolean(BasicApi.getEnvOrDefault("WISH_WRITE_BEHIND", "false"))
+                        ? new WishStoreWriteBehind(new WishStorePostgres(),
+                                Integer.parseInt(BasicApi.getEnvOrDefault("WISH_WRITE_BEHIND_BATCH_SIZE", "500")),
+                                Long.parseLong(BasicApi.getEnvOrDefault("WISH_WRITE_BEHIND_MAX_DELAY_MS", "5")),
+                                Integer.parseInt(BasicApi.getEnvOrDefault("WISH_WRITE_BEHIND_QUEUE_CAPACITY", "10000")))
+                        : new WishStorePostgres();
+                proofs = new FulfillmentProofStorePostgres();
+            }
+            WRITE_BEHIND = wishes instanceof WishStoreWriteBehind writeBehind ? writeBehind : null;
+            if (WRITE_BEHIND != null) {
+                // write the queued wishes when the JVM exits
+                Runtime.getRuntime().addShutdownHook(new Thread(WRITE_BEHIND::close, "wish-write-behind-close"));
+            }
+            // every store call is timed for /api/metrics
+            PEOPLE = StoreMetrics.timed(PeopleStore.class, people, "people");
+            WISHES = StoreMetrics.timed(WishStore.class, wishes, "wishes");
+            PROOFS = StoreMetrics.timed(FulfillmentProofStore.class, proofs, "proofs");
+        }
+    }
+}
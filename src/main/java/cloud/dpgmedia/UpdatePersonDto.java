@@ -1,8 +1,10 @@
 package cloud.dpgmedia;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.time.LocalDate;
 
-public record UpdatePersonDto(int id, String firstName, String lastName, LocalDate dateOfBirth, LocationDto addressLocation,
-                              Behavior behavior, int version
+public record UpdatePersonDto(@JsonProperty(required = true) int id, String firstName, String lastName, LocalDate dateOfBirth, LocationDto addressLocation,
+                              Behavior behavior, @JsonProperty(required = true) int version
 ) {}
 
@@ -14,4 +14,8 @@ public class Wish {
         this.beneficiaryId = beneficiaryId;
     }
 
+    public Wish copy() {
+        return new Wish(id, productName, quantity, beneficiaryId);
+    }
+
 }
@@ -0,0 +1,133 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * POST /api/wish/batch: create many wishes in one request.
+ * <p>
+ * The body is a JSON array of wishes in the format of POST /api/wish. Every element is validated on its
+ * own, the valid ones are stored in one transaction, and the response reports the result per element:
+ * <pre>{"inserted":1,"rejected":1,"results":[{"index":0,"status":"inserted","wish":{...}},{"index":1,"status":"invalid","error":"..."}]}</pre>
+ */
+public class WishBatchHandler implements HttpHandler {
+
+    static final int MAX_BATCH_SIZE = Integer.parseInt(BasicApi.getEnvOrDefault("WISH_BATCH_MAX_SIZE", "10000"));
+
+    /**
+     * One element of the batch, either a valid wish or the reason it is invalid.
+     */
+    record BatchItem(Wish wish, String error) {}
+
+    public void handle(HttpExchange exchange) throws IOException {
+        Log.debug("Handling wish batch request", "method", exchange.getRequestMethod());
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        List<BatchItem> items;
+        long parseStart = System.nanoTime();
+        try {
+            items = parseWishBatch(exchange.getRequestBody(), MAX_BATCH_SIZE);
+        } catch (IllegalArgumentException e) {
+            RequestTiming.record("parse", parseStart);
+            Log.info("Validation error", "error", e.getMessage());
+            JsonResponses.sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        RequestTiming.record("parse", parseStart);
+
+        List<Wish> valid = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            if (item.wish() != null) {
+                valid.add(item.wish());
+            }
+        }
+        List<WishInsertOutcome> outcomes = Stores.wishes().storeWishesWithinQuota(valid, BasicApi.MAX_WISHES_PER_BENEFICIARY);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody();
+             JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(os)) {
+            writeResults(generator, items, outcomes);
+        }
+    }
+
+    /**
+     * Bind and validate every element of a JSON array of wishes with the rules of {@link BasicApi#toWish(CreateWishDto)}.
+     *
+     * @throws IllegalArgumentException when the body is not a JSON array or holds more than maxSize elements
+     */
+    static List<BatchItem> parseWishBatch(InputStream json, int maxSize) {
+        JsonNode batch;
+        try {
+            batch = Json.MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Request body must be a JSON array of wishes");
+        }
+        if (batch == null || !batch.isArray()) {
+            throw new IllegalArgumentException("Request body must be a JSON array of wishes");
+        }
+        if (batch.size() > maxSize) {
+            throw new IllegalArgumentException("A batch cannot contain more than " + maxSize + " wishes");
+        }
+
+        List<BatchItem> items = new ArrayList<>(batch.size());
+        for (JsonNode element : batch) {
+            try {
+                Wish wish = element.isObject() ? BasicApi.toWish(Json.CREATE_WISH.readValue(element)) : null;
+                items.add(wish != null ? new BatchItem(wish, null) : new BatchItem(null, "Invalid wish data"));
+            } catch (IllegalArgumentException e) {
+                items.add(new BatchItem(null, e.getMessage()));
+            } catch (IOException e) {
+                items.add(new BatchItem(null, "Invalid wish data"));
+            }
+        }
+        return items;
+    }
+
+    // outcomes holds one entry per valid item, in order
+    static void writeResults(JsonGenerator generator, List<BatchItem> items, List<WishInsertOutcome> outcomes) throws IOException {
+        int inserted = (int) outcomes.stream().filter(outcome -> outcome == WishInsertOutcome.INSERTED).count();
+        generator.writeStartObject();
+        generator.writeNumberField("inserted", inserted);
+        generator.writeNumberField("rejected", items.size() - inserted);
+        generator.writeArrayFieldStart("results");
+        int stored = 0;
+        for (int index = 0; index < items.size(); index++) {
+            BatchItem item = items.get(index);
+            generator.writeStartObject();
+            generator.writeNumberField("index", index);
+            if (item.wish() == null) {
+                generator.writeStringField("status", "invalid");
+                generator.writeStringField("error", item.error());
+            } else {
+                WishInsertOutcome outcome = outcomes.get(stored++);
+                generator.writeStringField("status", outcome.name().toLowerCase());
+                switch (outcome) {
+                    case INSERTED -> {
+                        generator.writeFieldName("wish");
+                        JsonResponses.writeWish(generator, item.wish());
+                    }
+                    case BENEFICIARY_NOT_FOUND ->
+                            generator.writeStringField("error", "No person found with id: " + item.wish().beneficiaryId);
+                    case QUOTA_EXCEEDED ->
+                            generator.writeStringField("error", "Beneficiary " + item.wish().beneficiaryId + " already has "
+                                    + BasicApi.MAX_WISHES_PER_BENEFICIARY + " wishes, cannot add more");
+                }
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,6 @@
+package cloud.dpgmedia;
+
+/**
+ * Body of POST /api/wishfulfill.
+ */
+public record WishFulfillmentDto(String id) {}
@@ -1,59 +1,82 @@
 package cloud.dpgmedia;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class WishFulfillmentHandler implements HttpHandler {
 
+    private static final String VERIFY_PATH = "verify/";
+
+    record ProofVerification(String wishId, boolean valid, FulfillmentProof proof) {}
+
     BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        System.out.println("handling wish fulfillment request");
+        Log.debug("Handling wish fulfillment request", "method", exchange.getRequestMethod());
         String method = exchange.getRequestMethod();
 
         if ("POST".equalsIgnoreCase(method)) { // Handle POST requests to fulfill a wish
-            System.out.println("handling post request for wish fulfillment");
-            String body = getRequestBody(exchange);
-
-            // Manually parse the JSON payload (simple parsing, assumes well-formed input)
-            WishFulfillment wishFulfillment = parseWishFulfillmentFromJson(body);
+            // Bind the JSON request body straight from the stream
+            WishFulfillment wishFulfillment;
+            long parseStart = System.nanoTime();
+            try {
+                wishFulfillment = parseWishFulfillmentFromJson(exchange.getRequestBody());
+            } catch (IllegalArgumentException e) {
+                RequestTiming.record("parse", parseStart);
+                Log.info("Validation error", "error", e.getMessage());
+                JsonResponses.sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            RequestTiming.record("parse", parseStart);
 
             if (wishFulfillment != null) {
-                Optional<Wish> wishToBeFulfilled = new WishStorePostgres().getWish(wishFulfillment.id);
+                Optional<Wish> wishToBeFulfilled = Stores.wishes().getWish(wishFulfillment.id);
                 if (wishToBeFulfilled.isEmpty()) {
-                    System.out.println("No wish found with id: " + wishFulfillment.id);
+                    Log.info("No wish found", "wishId", wishFulfillment.id);
                     String errorResponse = String.format("{\"error\":\"No wish found with id: %s\"}", wishFulfillment.id);
                     exchange.sendResponseHeaders(400, errorResponse.length());
                     exchange.getResponseBody().write(errorResponse.getBytes());
                     exchange.getResponseBody().close();
                     return;
                 } else {
-                    System.out.println("Found wish to be fulfilled: " + wishToBeFulfilled.get().productName);
+                    Log.debug("Found wish to be fulfilled", "wishId", wishFulfillment.id, "productName", wishToBeFulfilled.get().productName);
+                    boolean async = QueryParams.of(exchange.getRequestURI()).isTrue("async");
+                    // a wish is mined only once, retries get the stored proof
+                    Optional<FulfillmentProof> storedProof = Stores.proofs().getProof(wishFulfillment.id);
+                    if (storedProof.isPresent()) {
+                        Log.debug("Wish already fulfilled, returning stored proof", "wishId", wishFulfillment.id);
+                        if (async) {
+                            sendJson(exchange, 200, Json.write(storedProof.get()));
+                        } else {
+                            sendText(exchange, 200, storedProof.get().toResponseText());
+                        }
+                        return;
+                    }
                     // find beneficiary
-                    Person person = new PeopleStorePostgres().getPerson(wishToBeFulfilled.get().beneficiaryId);
+                    Person person = Stores.people().getPerson(wishToBeFulfilled.get().beneficiaryId);
                     // throws runtime exception if person is not found
                     // calculate distance between person longitude and latitude and north pole
                     if (person.addressLocation == null) {
-                        System.out.println("No address location found for person with id: " + person.id);
+                        Log.info("No address location found for person", "personId", person.id);
                         String errorResponse = String.format("{\"error\":\"No address location found for person with id: %d\"}", person.id);
                         exchange.sendResponseHeaders(400, errorResponse.length());
                         exchange.getResponseBody().write(errorResponse.getBytes());
                         exchange.getResponseBody().close();
                         return;
                     }
+                    long difficultyStart = System.nanoTime();
                     double distanceToNorthPole = person.addressLocation.distanceToNorthPole();
-                    System.out.println("Distance to North Pole: " + distanceToNorthPole + " km");
                     // distance to north pole and back
                     double deliveryDistanceBackAndForth = distanceToNorthPole * 2;
                     // calculate delivery cost based on distance
@@ -61,48 +84,49 @@ public class WishFulfillmentHandler implements HttpHandler {
 
 
                     // per flown kilometer a short sha needs to be bruteforced
-                    String blockHeader;
                     LocalDateTime localDateTime = LocalDateTime.now();
                     String localdatetimeString = LocalDateTime.now().toString();
-                    System.out.println("ldt: " + localdatetimeString);
 
                     // max hash value divided by 16^(deliveryDistanceBackAndForth/8000)
                     // e.g. for 8000 km distance, max hash value divided by 16^1
                     // it has to be a power of 16
                     //
                     //BigInteger difficultyLevel = 16 to the power of (Math.ceil(deliveryDistanceBackAndForth / 8000));
-                    System.out.println("pow" + Math.pow(16, deliveryDistanceBackAndForth/7500));
                     BigInteger difficultyLevel = BigInteger.valueOf((long) Math.pow(16, deliveryDistanceBackAndForth / 7500));
-                    System.out.printf("difficultylevel: %064x%n", difficultyLevel);
 
 
                     BigInteger maxHashValue = MAX_HASH_VALUE.divide(difficultyLevel);
-                    System.out.printf("maximum allowed hash value for this wish: %064x%n", maxHashValue);
-                    // calculate the time of the following while loop
-                    // get initial time
-                    long startTime = System.currentTimeMillis();
-                    for (int nonce = 0; nonce < Integer.MAX_VALUE; nonce++) {
-                        String hexStringWithLeadingZeroes = String.format("%064x", maxHashValue);
-                        blockHeader = localdatetimeString + hexStringWithLeadingZeroes + nonce + wishToBeFulfilled.get().productName;
-                        String santaHash = HashCollision.getSantaHash(blockHeader);
-                        //System.out.println(santaHash);
-                        BigInteger santaHashValue = new BigInteger(santaHash, 16);
-
-                        if (maxHashValue.compareTo(santaHashValue) > 0) {
-                            long endTime = System.currentTimeMillis();
-                            long duration = endTime - startTime;
-                            // print block header and then print santa hash
-
-                            String response = "Found valid santa hash: " + santaHash + " for block header: " + blockHeader + " in " + duration + " ms";
-                            exchange.sendResponseHeaders(200, response.length());
-                            exchange.getResponseBody().write(response.getBytes());
-                            exchange.getResponseBody().close();
-                            return;
-                        }else{
-                            if (nonce % 100_000 == 0) {
-                                System.out.println("Tried " + (nonce + 1) + " nonces so far...");
-                            }
-                        }
+                    RequestTiming.record("difficulty", difficultyStart);
+                    if (Log.isEnabled(Log.Level.DEBUG)) {
+                        Log.debug("Difficulty computed", "wishId", wishFulfillment.id, "distanceToNorthPoleKm", distanceToNorthPole,
+                                "difficultyLevel", difficultyLevel, "maxHashValue", String.format("%064x", maxHashValue));
+                    }
+
+                    if (async) {
+                        // mine in the background, the client polls the status url for the result
+                        submitFulfillmentJob(exchange, wishFulfillment.id, localdatetimeString, maxHashValue, wishToBeFulfilled.get().productName, distanceToNorthPole);
+                        return;
+                    }
+
+                    // search the nonce space on all mining threads, the first valid hash wins
+                    long miningStart = System.nanoTime();
+                    MiningRunEvent miningEvent = new MiningRunEvent();
+                    miningEvent.begin();
+                    LongAdder hashesTried = new LongAdder();
+                    Optional<ParallelMiner.Result> result = ParallelMiner.getInstance()
+                            .mine(localdatetimeString, maxHashValue, wishToBeFulfilled.get().productName, hashesTried);
+                    miningEvent.end(wishFulfillment.id, distanceToNorthPole, maxHashValue, hashesTried.sum(), result.isPresent());
+                    RequestTiming.record("mining", miningStart);
+                    if (result.isPresent()) {
+                        // when a concurrent retry stored its proof first, answer with that one
+                        FulfillmentProof proof = Stores.proofs()
+                                .storeProof(FulfillmentProof.from(wishFulfillment.id, maxHashValue, result.get()));
+                        sendText(exchange, 200, proof.toResponseText());
+                    } else {
+                        String errorResponse = "{\"error\":\"No valid santa hash found for this wish\"}";
+                        exchange.sendResponseHeaders(500, errorResponse.length());
+                        exchange.getResponseBody().write(errorResponse.getBytes());
+                        exchange.getResponseBody().close();
                     }
 
                 }
@@ -114,12 +138,77 @@ public class WishFulfillmentHandler implements HttpHandler {
             }
 
 
+        } else if ("GET".equalsIgnoreCase(method)) { // Handle GET requests for the status of an async fulfillment
+            String jobId = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+            jobId = jobId.startsWith("/") ? jobId.substring(1) : jobId;
+            if (jobId.isEmpty()) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (jobId.startsWith(VERIFY_PATH)) {
+                verifyProof(exchange, jobId.substring(VERIFY_PATH.length()));
+                return;
+            }
+
+            Optional<FulfillmentJob> job = FulfillmentJobs.getInstance().get(jobId);
+            if (job.isEmpty()) {
+                sendJson(exchange, 404, String.format("{\"error\":\"No fulfillment job found with id: %s\"}", jobId));
+                return;
+            }
+            sendJson(exchange, 200, Json.write(job.get().toStatusView()));
         } else {
             // Method not allowed
             exchange.sendResponseHeaders(405, -1); // 405 Method Not Allowed
         }
     }
 
+    private void submitFulfillmentJob(HttpExchange exchange, String wishId, String timestamp, BigInteger maxHashValue, String productName,
+                                      double distanceToNorthPole) throws IOException {
+        FulfillmentJob job;
+        try {
+            job = FulfillmentJobs.getInstance().submit(wishId, timestamp, maxHashValue, productName, distanceToNorthPole);
+        } catch (RejectedExecutionException e) {
+            Log.warn("Fulfillment job queue is full, rejecting wish", "wishId", wishId);
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            sendJson(exchange, 503, "{\"error\":\"Too many fulfillments in progress, try again later\"}");
+            return;
+        }
+
+        String statusUrl = exchange.getHttpContext().getPath() + "/" + job.id;
+        Log.debug("Queued fulfillment job", "jobId", job.id, "wishId", wishId);
+        exchange.getResponseHeaders().set("Location", statusUrl);
+        sendJson(exchange, 202, String.format("{\"jobId\":\"%s\", \"status\":\"%s\", \"statusUrl\":\"%s\"}", job.id, job.getStatus(), statusUrl));
+    }
+
+    /**
+     * GET /api/wishfulfill/verify/{wishId}: check the stored proof of a wish with a single hash.
+     */
+    private void verifyProof(HttpExchange exchange, String wishId) throws IOException {
+        Optional<FulfillmentProof> proof = Stores.proofs().getProof(wishId);
+        if (proof.isEmpty()) {
+            sendJson(exchange, 404, String.format("{\"error\":\"No fulfillment proof found for wish: %s\"}", wishId));
+            return;
+        }
+        boolean valid = proof.get().verify();
+        Log.debug("Verified proof", "wishId", wishId, "valid", valid);
+        sendJson(exchange, 200, Json.write(new ProofVerification(wishId, valid, proof.get())));
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.getResponseBody().close();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.getResponseBody().close();
+    }
+
     public static String generateRandomString(int length) {
         // Characters to use in the random string
         String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
@@ -134,47 +223,20 @@ public class WishFulfillmentHandler implements HttpHandler {
         return randomString.toString();
     }
 
-    private WishFulfillment parseWishFulfillmentFromJson(String json) {
+    private WishFulfillment parseWishFulfillmentFromJson(InputStream json) {
         try {
-            String id;
-            System.out.println("Using jackson");
-            ObjectMapper mapper = new ObjectMapper();
-
-            JsonNode rootNode = mapper.readTree(json);
-            JsonNode idNode = rootNode.path("id");
-            if (idNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: id");
+            WishFulfillmentDto dto = Json.WISH_FULFILLMENT.readValue(json);
+            if (dto == null) {
+                return null;
             }
-            id = idNode.asText();
-
-            return new WishFulfillment(id);
-        } catch (Exception e) {
-            System.out.println("caught :" + e.getMessage());
-            if (e instanceof IllegalArgumentException) {
-                System.out.println(" throwing illegal argument exception again");
-                throw (IllegalArgumentException) e;
-            } else {
-                System.out.println("parsing error: " + e.getMessage());
+            if (dto.id() == null) {
+                throw new IllegalArgumentException("Missing required field: id");
             }
+            return new WishFulfillment(dto.id());
+        } catch (IOException e) {
+            Log.info("Parsing error", "error", e.getMessage());
             // Return null if parsing fails (e.g., malformed JSON)
             return null;
         }
     }
-
-    private String getRequestBody(HttpExchange exchange) throws IOException {
-        InputStream requestBody = exchange.getRequestBody();
-        //String body = new String(requestBody.readAllBytes());
-
-        // Read all bytes using standard Java classes
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] temp = new byte[1024];
-        int bytesRead;
-        while ((bytesRead = requestBody.read(temp)) != -1) {
-            buffer.write(temp, 0, bytesRead);
-        }
-
-        // Convert byte array to String using UTF-8 encoding
-        String body = new String(buffer.toByteArray(), "UTF-8");
-        return body;
-    }
 }
@@ -0,0 +1,15 @@
+package cloud.dpgmedia;
+
+/**
+ * Result of {@link WishStorePostgres#storeWishWithinQuota(Wish, int)}.
+ */
+public enum WishInsertOutcome {
+    INSERTED,
+    BENEFICIARY_NOT_FOUND,
+    QUOTA_EXCEEDED;
+
+    // Maps the text returned by the store_wish_within_quota database function
+    static WishInsertOutcome fromDatabase(String value) {
+        return valueOf(value.toUpperCase());
+    }
+}
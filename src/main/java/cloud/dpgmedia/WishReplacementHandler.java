@@ -1,34 +1,27 @@
 package cloud.dpgmedia;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.List;
 import java.util.Optional;
 
 public class WishReplacementHandler implements HttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
-        System.out.println("handling wish replacement request");
+        Log.debug("Handling wish replacement request", "method", exchange.getRequestMethod());
         String method = exchange.getRequestMethod();
 
         if ("PUT".equalsIgnoreCase(method)) { // Handle PUT requests to create a wish
-            System.out.println("handling put request");
-            // Parse the raw JSON request body manually
-            String body = getRequestBody(exchange);
-
-
-            // Manually parse the JSON payload (simple parsing, assumes well-formed input)
+            // Bind the JSON request body straight from the stream
             ReplacementWish replacementWish;
+            long parseStart = System.nanoTime();
             try {
-                replacementWish = parseReplacementWishFromJson(body);
+                replacementWish = parseReplacementWishFromJson(exchange.getRequestBody());
             } catch (IllegalArgumentException e) {
-                System.out.println("Validation error: " + e.getMessage());
+                RequestTiming.record("parse", parseStart);
+                Log.info("Validation error", "error", e.getMessage());
                 String errorResponse = String.format("{\"error\":\"%s\"}", e.getMessage());
                 exchange.sendResponseHeaders(400, errorResponse.length());
                 OutputStream os = exchange.getResponseBody();
@@ -36,47 +29,24 @@ public class WishReplacementHandler implements HttpHandler {
                 os.close();
                 return;
             }
+            RequestTiming.record("parse", parseStart);
 
             if (replacementWish != null) {
-                Person person = new PeopleStorePostgres().getPerson(replacementWish.beneficiaryId);
-                if (person == null) {
-                    System.out.println("No person found with id: " + replacementWish.beneficiaryId);
-                    String errorResponse = String.format("{\"error\":\"No person found with id: %d\"}", replacementWish.beneficiaryId);
-                    exchange.sendResponseHeaders(400, errorResponse.length());
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(errorResponse.getBytes());
-                    os.close();
-                    return;
-                }
-
-
-                List<Wish> wishesForBeneficiary = new WishStorePostgres().getWishesForBeneficiary(replacementWish.beneficiaryId);
-                // select wish from wisheslist where id  = replacementWish.idOfWishToBeReplaced
-                Optional<Wish> optionalWish = wishesForBeneficiary.stream()
-                        .filter(aWish -> aWish.id.equals(replacementWish.idOfWishToBeReplaced))
-                        .findFirst();
-                if (optionalWish.isEmpty()) {
-                    System.out.println("No wish found with id: " + replacementWish.idOfWishToBeReplaced + " for beneficiary id: " + replacementWish.beneficiaryId);
+                // Ownership check, delete and insert run as one statement
+                Wish newWish = new Wish(replacementWish.id, replacementWish.productName, replacementWish.quantity, replacementWish.beneficiaryId);
+                Optional<WishStore.Replacement> replacement =
+                        Stores.wishes().replaceWish(replacementWish.idOfWishToBeReplaced, newWish);
+                if (replacement.isEmpty()) {
+                    Log.info("No wish found to replace", "wishId", replacementWish.idOfWishToBeReplaced, "beneficiaryId", replacementWish.beneficiaryId);
                     String errorResponse = String.format("{\"error\":\"No wish found with id: %s for beneficiary id: %d\"}", replacementWish.idOfWishToBeReplaced, replacementWish.beneficiaryId);
                     exchange.sendResponseHeaders(400, errorResponse.length());
                     OutputStream os = exchange.getResponseBody();
                     os.write(errorResponse.getBytes());
                     os.close();
                     return;
-                }else {
-                    System.out.println("Found wish to be replaced: " + optionalWish.get().productName);
                 }
 
-                WishStorePostgres wishStore = new WishStorePostgres();
-                System.out.println("Deleting wish from db: " + replacementWish.idOfWishToBeReplaced);
-                wishStore.deleteWish(replacementWish.idOfWishToBeReplaced);
-                System.out.println("Create new wish domain object with id: " + replacementWish.id);
-                Wish newWish = new Wish(replacementWish.id, replacementWish.productName, replacementWish.quantity, replacementWish.beneficiaryId);
-                System.out.println("Storing new wish in db with id: " + newWish.id);
-                wishStore.storeWish(newWish);
-
-
-                String response = generateJsonFromDeleteAndNewWish(optionalWish.get(), newWish);
+                String response = generateJsonFromDeleteAndNewWish(replacement.get().deleted(), replacement.get().inserted());
                 exchange.sendResponseHeaders(200, response.length());
                 OutputStream os = exchange.getResponseBody();
                 os.write(response.getBytes());
@@ -90,135 +60,88 @@ public class WishReplacementHandler implements HttpHandler {
                 os.close();
             }
         } else if ("GET".equalsIgnoreCase(method)) { // Handle GET requests to list all wishe
-            // Respond with the list of all wishes in JSON format
-            WishStorePostgres postgres = new WishStorePostgres();
-            String response = generateJsonFromWish(postgres.getAllWishes());
-            exchange.sendResponseHeaders(200, response.length());
-            OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            // With limit/after query parameters respond with one keyset page, otherwise with the whole list
+            Optional<PageRequest> pageRequest;
+            try {
+                pageRequest = PageRequest.from(QueryParams.of(exchange.getRequestURI()));
+            } catch (IllegalArgumentException e) {
+                JsonResponses.sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            if (pageRequest.isPresent()) {
+                Page<Wish> page = Stores.wishes().getWishesPage(pageRequest.get());
+                JsonResponses.sendPage(exchange, page, JsonResponses::writeWish);
+                return;
+            }
+
+            // Stream the list of all wishes in JSON format while rows arrive from the database
+            WishStore store = Stores.wishes();
+            JsonResponses.streamArray(exchange, generator ->
+                    store.forEachWish(wish -> JsonResponses.writeWish(generator, wish)));
         } else {
             // Respond with a 405 Method Not Allowed for unsupported methods
             exchange.sendResponseHeaders(405, -1);
         }
     }
 
-    private static String getRequestBody(HttpExchange exchange) throws IOException {
-        InputStream requestBody = exchange.getRequestBody();
-        //String body = new String(requestBody.readAllBytes());
-
-        // Read all bytes using standard Java classes
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] temp = new byte[1024];
-        int bytesRead;
-        while ((bytesRead = requestBody.read(temp)) != -1) {
-            buffer.write(temp, 0, bytesRead);
-        }
-
-        // Convert byte array to String using UTF-8 encoding
-        String body = new String(buffer.toByteArray(), "UTF-8");
-        return body;
-    }
-
-
-    // Helper method: Parse JSON into an Wish object (manually)
+    // Helper method: Parse JSON into an ReplacementWish object
     public static ReplacementWish parseReplacementWishFromJson(String json) {
         // Assumes a simple JSON structure like: {"id":"123", "productName":"Laptop", "quantity":2, "idOfWishToBeReplaced":456}
         try {
-            String id, productName, quantityStr, idOfWishToBeReplaced;
-            int beneficiaryId;
-            System.out.println("Using jackson");
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(json);
-
-            JsonNode idNode = rootNode.path("id");
-            if (idNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: id");
-            }
-            id = idNode.asText();
-
-            JsonNode productNameNode = rootNode.path("productName");
-            if (productNameNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: productName");
-            }
-            productName = productNameNode.asText();
-
-            JsonNode quantityNode = rootNode.path("quantity");
-            if (quantityNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing required field: quantity");
-            }
-            quantityStr = quantityNode.asText();
-
-            JsonNode beneficiaryNode = rootNode.path("beneficiaryId");
-            if (beneficiaryNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing field: beneficiaryId");
-            } else if (!beneficiaryNode.isInt()) {
-                throw new IllegalArgumentException("beneficiaryId must be an integer");
-            } else {
-                beneficiaryId = beneficiaryNode.asInt();
-            }
-            JsonNode replacementNode = rootNode.path("idOfWishToBeReplaced");
-            if (replacementNode.isMissingNode()) {
-                throw new IllegalArgumentException("Missing field: idOfWishToBeReplaced");
-            } else {
-                idOfWishToBeReplaced = replacementNode.asText();
-            }
-
-
-
-            if (productName.isEmpty()) {
-                throw new IllegalArgumentException("Wish ProductName cannot be Empty");
-            }
-            System.out.println("productname is " + productName);
-
-            if (quantityStr.trim().isEmpty()) {
-                System.out.println("json contains empty quantity");
-                throw new IllegalArgumentException("Wish Quantity cannot be empty");
-            }
-            System.out.println("Quantity is:" + quantityStr);
-            Double quantitydouble = Double.parseDouble(quantityStr);
-            int quantity = quantitydouble.intValue();
-            if (quantity < 0) {
-                System.out.println("Throwing");
-                throw new IllegalArgumentException("Wish Quantity cannot be negative");
-            }
+            return toReplacementWish(Json.REPLACEMENT_WISH.readValue(json));
+        } catch (IOException e) {
+            Log.info("Parsing error", "error", e.getMessage());
+            // Return null if parsing fails (e.g., malformed JSON)
+            return null;
+        }
+    }
 
-            return new ReplacementWish(id, productName, quantity, beneficiaryId, idOfWishToBeReplaced);
-        } catch (Exception e) {
-            System.out.println("caught :" + e.getMessage());
-            if (e instanceof IllegalArgumentException) {
-                System.out.println(" throwing illegal argument exception again");
-                throw (IllegalArgumentException) e;
-            } else {
-                System.out.println("parsing error: " + e.getMessage());
-            }
+    // Helper method: Parse a request body stream into an ReplacementWish object in one pass
+    public static ReplacementWish parseReplacementWishFromJson(InputStream json) {
+        try {
+            return toReplacementWish(Json.REPLACEMENT_WISH.readValue(json));
+        } catch (IOException e) {
+            Log.info("Parsing error", "error", e.getMessage());
             // Return null if parsing fails (e.g., malformed JSON)
             return null;
         }
     }
 
+    static ReplacementWish toReplacementWish(ReplacementWishDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        if (dto.id() == null) {
+            throw new IllegalArgumentException("Missing required field: id");
+        }
+        if (dto.productName() == null) {
+            throw new IllegalArgumentException("Missing required field: productName");
+        }
+        if (dto.quantity() == null) {
+            throw new IllegalArgumentException("Missing required field: quantity");
+        }
+        if (dto.beneficiaryId() == null) {
+            throw new IllegalArgumentException("Missing field: beneficiaryId");
+        } else if (!dto.beneficiaryId().isInt()) {
+            throw new IllegalArgumentException("beneficiaryId must be an integer");
+        }
+        if (dto.idOfWishToBeReplaced() == null) {
+            throw new IllegalArgumentException("Missing field: idOfWishToBeReplaced");
+        }
+
+        int quantity = BasicApi.parseQuantity(dto.productName(), dto.quantity());
+        return new ReplacementWish(dto.id(), dto.productName(), quantity, dto.beneficiaryId().asInt(), dto.idOfWishToBeReplaced());
+    }
+
     // Helper method: Generate JSON from an Wish object (manually)
     private static String generateJsonFromWish(Wish wish) {
         return String.format("{\"id\":\"%s\", \"productName\":\"%s\", \"quantity\":%d, \"beneficiaryId\":%d}", wish.id, wish.productName, wish.quantity, wish.beneficiaryId);
     }
 
     // generate JSON for a delete wish and a new wish
-    private static String generateJsonFromDeleteAndNewWish(Wish deletedWish, Wish newWish) {
+    static String generateJsonFromDeleteAndNewWish(Wish deletedWish, Wish newWish) {
         return String.format("{\"deletedWish\":{\"id\":\"%s\", \"productName\":\"%s\", \"quantity\":%d, \"beneficiaryId\":%d}, \"newWish\":{\"id\":\"%s\", \"productName\":\"%s\", \"quantity\":%d, \"beneficiaryId\":%d}}",
                 deletedWish.id, deletedWish.productName, deletedWish.quantity, deletedWish.beneficiaryId,
                 newWish.id, newWish.productName, newWish.quantity, newWish.beneficiaryId);
     }
-
-    // Helper method: Generate JSON from a list of Wish objects (manually)
-    private static String generateJsonFromWish(List<Wish> wishes) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < wishes.size(); i++) {
-            json.append(generateJsonFromWish(wishes.get(i)));
-            if (i < wishes.size() - 1) {
-                json.append(", ");
-            }
-        }
-        json.append("]");
-        return json.toString();
-    }
 }
@@ -0,0 +1,60 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage of wishes. {@link Stores#wishes()} returns the implementation selected with STORE.
+ */
+public interface WishStore {
+
+    record Replacement(Wish deleted, Wish inserted) {}
+
+    /**
+     * Store a wish without checking the quota of its beneficiary.
+     *
+     * @throws RuntimeException when the beneficiary does not exist or the id is taken
+     */
+    void storeWish(Wish wish);
+
+    /**
+     * Store the wish only if its beneficiary exists and has fewer than maxWishes wishes. The check and
+     * the insert are atomic, so concurrent requests cannot push a beneficiary over the limit.
+     */
+    WishInsertOutcome storeWishWithinQuota(Wish wish, int maxWishes);
+
+    /**
+     * Store a batch of wishes atomically with the same rules as {@link #storeWishWithinQuota(Wish, int)}.
+     * Wishes are admitted in list order, so earlier wishes of a beneficiary take the remaining quota first.
+     *
+     * @return the outcome of every wish, in the order of the input
+     */
+    List<WishInsertOutcome> storeWishesWithinQuota(List<Wish> wishes, int maxWishes);
+
+    List<Wish> getAllWishes();
+
+    /**
+     * Pass every wish to the consumer, without collecting them in a list first.
+     */
+    void forEachWish(RowConsumer<Wish> consumer) throws IOException;
+
+    /**
+     * One page of wishes ordered by id.
+     */
+    Page<Wish> getWishesPage(PageRequest pageRequest);
+
+    List<Wish> getWishesForBeneficiary(int beneficiaryId);
+
+    /**
+     * Replace a wish of a beneficiary with a new wish: the delete and the insert both happen or neither
+     * does, and only a wish owned by the beneficiary of the new wish is replaced.
+     *
+     * @return the deleted and inserted wish, or empty when the beneficiary has no wish with that id
+     */
+    Optional<Replacement> replaceWish(String idOfWishToBeReplaced, Wish newWish);
+
+    void deleteWish(String id);
+
+    Optional<Wish> getWish(String id);
+}
@@ -0,0 +1,348 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Wishes kept in memory, for benchmark runs and deployments where database round trips are the bottleneck.
+ * <p>
+ * All wishes live in a concurrent map ordered by id, which serves lookups, listings and pages without locks.
+ * Next to it every beneficiary's wishes are indexed by the int id of the beneficiary. The index is split
+ * over {@value #STRIPES} stripes, each guarded by its own lock: the quota check and the insert run under
+ * the lock of the beneficiary's stripe, so concurrent requests cannot push a beneficiary over the limit
+ * while requests for beneficiaries in other stripes proceed in parallel.
+ */
+public class WishStoreInMemory implements WishStore {
+
+    // Power of two, so a stripe is picked with the top bits of the hash
+    private static final int STRIPES = 64;
+
+    private final ConcurrentSkipListMap<String, Wish> wishes = new ConcurrentSkipListMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final IntPredicate beneficiaryExists;
+
+    /**
+     * @param beneficiaryExists tells whether a person exists, people are never deleted so a yes stays true
+     */
+    public WishStoreInMemory(IntPredicate beneficiaryExists) {
+        this.beneficiaryExists = beneficiaryExists;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public void storeWish(Wish wish) {
+        if (!beneficiaryExists.test(wish.beneficiaryId)) {
+            throw new RuntimeException("Beneficiary " + wish.beneficiaryId + " does not exist");
+        }
+        Stripe stripe = stripeOf(wish.beneficiaryId);
+        stripe.lock.lock();
+        try {
+            insert(stripe, wish);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public WishInsertOutcome storeWishWithinQuota(Wish wish, int maxWishes) {
+        if (!beneficiaryExists.test(wish.beneficiaryId)) {
+            return WishInsertOutcome.BENEFICIARY_NOT_FOUND;
+        }
+        Stripe stripe = stripeOf(wish.beneficiaryId);
+        stripe.lock.lock();
+        try {
+            if (stripe.index.get(wish.beneficiaryId).length >= maxWishes) {
+                return WishInsertOutcome.QUOTA_EXCEEDED;
+            }
+            insert(stripe, wish);
+            return WishInsertOutcome.INSERTED;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Locks the stripes of all beneficiaries in the batch in stripe order, so batches cannot deadlock each other.
+     * Outcomes are decided before anything is stored, which keeps the batch all or nothing when an id is taken.
+     */
+    @Override
+    public List<WishInsertOutcome> storeWishesWithinQuota(List<Wish> wishes, int maxWishes) {
+        List<WishInsertOutcome> outcomes = new ArrayList<>(wishes.size());
+        if (wishes.isEmpty()) {
+            return outcomes;
+        }
+        Set<Integer> stripeIndexes = new TreeSet<>();
+        for (Wish wish : wishes) {
+            stripeIndexes.add(stripeIndex(wish.beneficiaryId));
+        }
+        List<Stripe> locked = new ArrayList<>(stripeIndexes.size());
+        try {
+            for (int stripeIndex : stripeIndexes) {
+                stripes[stripeIndex].lock.lock();
+                locked.add(stripes[stripeIndex]);
+            }
+
+            Set<String> ids = new HashSet<>();
+            Map<Integer, Integer> wishCounts = new HashMap<>();
+            for (Wish wish : wishes) {
+                if (!beneficiaryExists.test(wish.beneficiaryId)) {
+                    outcomes.add(WishInsertOutcome.BENEFICIARY_NOT_FOUND);
+                    continue;
+                }
+                int current = wishCounts.computeIfAbsent(wish.beneficiaryId, id -> stripeOf(id).index.get(id).length);
+                if (current >= maxWishes) {
+                    outcomes.add(WishInsertOutcome.QUOTA_EXCEEDED);
+                    continue;
+                }
+                if (!ids.add(wish.id) || this.wishes.containsKey(wish.id)) {
+                    throw new RuntimeException("Wish " + wish.id + " already exists");
+                }
+                wishCounts.put(wish.beneficiaryId, current + 1);
+                outcomes.add(WishInsertOutcome.INSERTED);
+            }
+
+            for (int i = 0; i < wishes.size(); i++) {
+                if (outcomes.get(i) == WishInsertOutcome.INSERTED) {
+                    Wish wish = wishes.get(i);
+                    insert(stripeOf(wish.beneficiaryId), wish);
+                }
+            }
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                locked.get(i).lock.unlock();
+            }
+        }
+        return outcomes;
+    }
+
+    @Override
+    public List<Wish> getAllWishes() {
+        List<Wish> copies = new ArrayList<>(wishes.size());
+        for (Wish wish : wishes.values()) {
+            copies.add(wish.copy());
+        }
+        return copies;
+    }
+
+    @Override
+    public void forEachWish(RowConsumer<Wish> consumer) throws IOException {
+        for (Wish wish : wishes.values()) {
+            consumer.accept(wish.copy());
+        }
+    }
+
+    @Override
+    public Page<Wish> getWishesPage(PageRequest pageRequest) {
+        Iterable<Wish> ordered = pageRequest.after() == null
+                ? wishes.values()
+                : wishes.tailMap(pageRequest.after(), false).values();
+
+        // one extra wish tells us whether there is a next page
+        List<Wish> page = new ArrayList<>(pageRequest.limit() + 1);
+        for (Wish wish : ordered) {
+            page.add(wish.copy());
+            if (page.size() > pageRequest.limit()) {
+                break;
+            }
+        }
+        return Page.fromLookahead(page, pageRequest.limit(), wish -> wish.id);
+    }
+
+    @Override
+    public List<Wish> getWishesForBeneficiary(int beneficiaryId) {
+        Stripe stripe = stripeOf(beneficiaryId);
+        Wish[] indexed;
+        stripe.lock.lock();
+        try {
+            indexed = stripe.index.get(beneficiaryId);
+        } finally {
+            stripe.lock.unlock();
+        }
+        // the arrays in the index are never changed in place, so they can be read outside the lock
+        List<Wish> copies = new ArrayList<>(indexed.length);
+        for (Wish wish : indexed) {
+            copies.add(wish.copy());
+        }
+        return copies;
+    }
+
+    @Override
+    public Optional<Replacement> replaceWish(String idOfWishToBeReplaced, Wish newWish) {
+        Stripe stripe = stripeOf(newWish.beneficiaryId);
+        stripe.lock.lock();
+        try {
+            // the beneficiary's wishes only change under this lock
+            Wish deleted = wishes.get(idOfWishToBeReplaced);
+            if (deleted == null || deleted.beneficiaryId != newWish.beneficiaryId) {
+                return Optional.empty();
+            }
+            if (!newWish.id.equals(idOfWishToBeReplaced) && wishes.containsKey(newWish.id)) {
+                throw new RuntimeException("Wish " + newWish.id + " already exists");
+            }
+            Wish inserted = newWish.copy();
+            wishes.remove(idOfWishToBeReplaced);
+            wishes.put(inserted.id, inserted);
+            stripe.index.put(newWish.beneficiaryId, replaced(stripe.index.get(newWish.beneficiaryId), deleted, inserted));
+            return Optional.of(new Replacement(deleted.copy(), inserted.copy()));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteWish(String id) {
+        Wish wish = wishes.get(id);
+        if (wish == null) {
+            return;
+        }
+        Stripe stripe = stripeOf(wish.beneficiaryId);
+        stripe.lock.lock();
+        try {
+            // a replacement may have removed it since we looked it up
+            if (wishes.remove(id, wish)) {
+                stripe.index.put(wish.beneficiaryId, replaced(stripe.index.get(wish.beneficiaryId), wish, null));
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Wish> getWish(String id) {
+        Wish wish = wishes.get(id);
+        return wish == null ? Optional.empty() : Optional.of(wish.copy());
+    }
+
+    /**
+     * Store a wish of a beneficiary whose stripe lock is held.
+     */
+    private void insert(Stripe stripe, Wish wish) {
+        Wish stored = wish.copy();
+        if (wishes.putIfAbsent(stored.id, stored) != null) {
+            throw new RuntimeException("Wish " + wish.id + " already exists");
+        }
+        Wish[] current = stripe.index.get(stored.beneficiaryId);
+        Wish[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = stored;
+        stripe.index.put(stored.beneficiaryId, extended);
+    }
+
+    /**
+     * @return a new array with oldWish replaced by newWish, or removed when newWish is null
+     */
+    private static Wish[] replaced(Wish[] wishes, Wish oldWish, Wish newWish) {
+        List<Wish> result = new ArrayList<>(wishes.length);
+        for (Wish wish : wishes) {
+            if (wish != oldWish) {
+                result.add(wish);
+            } else if (newWish != null) {
+                result.add(newWish);
+            }
+        }
+        return result.toArray(new Wish[0]);
+    }
+
+    private Stripe stripeOf(int beneficiaryId) {
+        return stripes[stripeIndex(beneficiaryId)];
+    }
+
+    static int stripeIndex(int beneficiaryId) {
+        // the top bits, a stripe's index picks its slots with the low bits of the same hash
+        return BeneficiaryIndex.hash(beneficiaryId) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES));
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final BeneficiaryIndex index = new BeneficiaryIndex();
+    }
+
+    /**
+     * Open addressing map from a primitive beneficiary id to that beneficiary's wishes, without boxing the keys.
+     * Not thread-safe, every access happens under the lock of the stripe that owns it. Beneficiaries are never
+     * removed, one without wishes keeps an empty array.
+     */
+    static final class BeneficiaryIndex {
+
+        private static final Wish[] NONE = new Wish[0];
+
+        private int[] keys = new int[16];
+        // null marks a free slot
+        private Wish[][] values = new Wish[16][];
+        private int size;
+
+        static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        Wish[] get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return NONE;
+        }
+
+        void put(int key, Wish[] wishes) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    values[slot] = wishes;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = wishes;
+            // keep the table at most half full so probe sequences stay short
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the slots a lookup of key reads, 1 when it is found or missing at its home slot
+         */
+        int probeLength(int key) {
+            int mask = keys.length - 1;
+            int probes = 1;
+            for (int slot = hash(key) & mask; values[slot] != null && keys[slot] != key; slot = (slot + 1) & mask) {
+                probes++;
+            }
+            return probes;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Wish[][] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Wish[oldKeys.length * 2][];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
@@ -1,48 +1,29 @@
 package cloud.dpgmedia;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public class WishStorePostgres {
+public class WishStorePostgres implements WishStore {
 
-    // Database connection details from environment variables
-    // Password-less authentication using trust/peer auth with network isolation
-    private static final String DB_HOST = getEnvOrDefault("DB_HOST", "localhost");
-    private static final String DB_PORT = getEnvOrDefault("DB_PORT", "5432");
-    private static final String DB_NAME = getEnvOrDefault("DB_NAME", "webapp_db");
-    private static final String DB_USER = getEnvOrDefault("DB_USER", "wishkeeper");
-    private static final String DB_PASSWORD = getEnvOrDefault("DB_PASSWORD", "");
-    private static final String DB_URL = String.format("jdbc:postgresql://%s:%s/%s", DB_HOST, DB_PORT, DB_NAME);
+    // Rows fetched per round trip while streaming, keeps memory flat regardless of table size
+    private static final int STREAM_FETCH_SIZE = 500;
 
     /**
-     * Get environment variable with default fallback
-     */
-    private static String getEnvOrDefault(String key, String defaultValue) {
-        String value = System.getenv(key);
-        return (value != null && !value.trim().isEmpty()) ? value : defaultValue;
-    }
-
-    /**
-     * Get database connection with or without password
-     * Supports password-less authentication (trust/peer auth)
+     * Borrow a connection from the shared pool, closing it returns it to the pool
      */
     private static Connection getConnection() throws SQLException {
-        if (DB_PASSWORD.isEmpty()) {
-            // Password-less authentication (trust/peer)
-            java.util.Properties props = new java.util.Properties();
-            props.setProperty("user", DB_USER);
-            return DriverManager.getConnection(DB_URL, props);
-        } else {
-            // Traditional password authentication
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        }
+        return ConnectionPool.getInstance().getConnection();
     }
 
+    @Override
     public void storeWish(Wish wish) {
         // Placeholder for storing the wish in a PostgreSQL database
-        System.out.println("Storing wish in PostgreSQL: " + wish);
+        Log.debug("Storing wish", "wishId", wish.id, "beneficiaryId", wish.beneficiaryId);
 
         String sql = "INSERT INTO wishes (id, productName, quantity, beneficiaryId) VALUES (?, ?, ?, ?)";
 
@@ -56,15 +37,121 @@ public class WishStorePostgres {
             preparedStatement.setInt(4, wish.beneficiaryId);
 
             int rowsAffected = preparedStatement.executeUpdate();
-            System.out.println("Rows inserted: " + rowsAffected);
+            Log.debug("Wish stored", "wishId", wish.id, "rows", rowsAffected);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    /**
+     * Store the wish only if its beneficiary exists and has fewer than maxWishes wishes.
+     * The check and the insert run in one database function call, so concurrent requests cannot
+     * push a beneficiary over the limit.
+     */
+    @Override
+    public WishInsertOutcome storeWishWithinQuota(Wish wish, int maxWishes) {
+        String sql = "SELECT store_wish_within_quota(?, ?, ?, ?, ?)";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setString(1, wish.id);
+            preparedStatement.setString(2, wish.productName);
+            preparedStatement.setInt(3, wish.quantity);
+            preparedStatement.setInt(4, wish.beneficiaryId);
+            preparedStatement.setInt(5, maxWishes);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                WishInsertOutcome outcome = WishInsertOutcome.fromDatabase(resultSet.getString(1));
+                Log.debug("Wish insert", "wishId", wish.id, "beneficiaryId", wish.beneficiaryId, "outcome", outcome);
+                return outcome;
+            }
+        } catch (SQLException e) {
+            Log.error("Storing wish failed", e, "wishId", wish.id);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Store a batch of wishes in one transaction with the same rules as {@link #storeWishWithinQuota(Wish, int)}.
+     * <p>
+     * The beneficiaries are locked in id order with the lock the single insert takes, their current wish
+     * counts are read in one query, and the accepted wishes are inserted with one JDBC batch. Wishes are
+     * admitted in list order, so earlier wishes of a beneficiary take the remaining quota first.
+     *
+     * @return the outcome of every wish, in the order of the input
+     */
+    @Override
+    public List<WishInsertOutcome> storeWishesWithinQuota(List<Wish> wishes, int maxWishes) {
+        List<WishInsertOutcome> outcomes = new ArrayList<>(wishes.size());
+        if (wishes.isEmpty()) {
+            return outcomes;
+        }
+        Integer[] beneficiaryIds = wishes.stream().map(wish -> wish.beneficiaryId).distinct().sorted().toArray(Integer[]::new);
+
+        String lockSql = "SELECT id FROM people WHERE id = ANY (?) ORDER BY id FOR NO KEY UPDATE";
+        String countSql = "SELECT beneficiaryId, count(*) AS wishes FROM wishes WHERE beneficiaryId = ANY (?) GROUP BY beneficiaryId";
+        String insertSql = "INSERT INTO wishes (id, productName, quantity, beneficiaryId) VALUES (?, ?, ?, ?)";
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement(lockSql);
+                 PreparedStatement count = connection.prepareStatement(countSql);
+                 PreparedStatement insert = connection.prepareStatement(insertSql)) {
+
+                Array ids = connection.createArrayOf("integer", beneficiaryIds);
+                Map<Integer, Integer> wishCounts = new HashMap<>();
+                lock.setArray(1, ids);
+                try (ResultSet resultSet = lock.executeQuery()) {
+                    while (resultSet.next()) {
+                        wishCounts.put(resultSet.getInt("id"), 0);
+                    }
+                }
+                // A separate statement, so the counts include wishes committed while we waited for the locks
+                count.setArray(1, ids);
+                try (ResultSet resultSet = count.executeQuery()) {
+                    while (resultSet.next()) {
+                        wishCounts.put(resultSet.getInt("beneficiaryId"), resultSet.getInt("wishes"));
+                    }
+                }
+
+                for (Wish wish : wishes) {
+                    Integer current = wishCounts.get(wish.beneficiaryId);
+                    if (current == null) {
+                        outcomes.add(WishInsertOutcome.BENEFICIARY_NOT_FOUND);
+                    } else if (current >= maxWishes) {
+                        outcomes.add(WishInsertOutcome.QUOTA_EXCEEDED);
+                    } else {
+                        wishCounts.put(wish.beneficiaryId, current + 1);
+                        insert.setString(1, wish.id);
+                        insert.setString(2, wish.productName);
+                        insert.setInt(3, wish.quantity);
+                        insert.setInt(4, wish.beneficiaryId);
+                        insert.addBatch();
+                        outcomes.add(WishInsertOutcome.INSERTED);
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Log.error("Storing wish batch failed", e, "wishes", wishes.size());
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        Log.debug("Stored wish batch", "wishes", wishes.size());
+        return outcomes;
+    }
+
+    @Override
     public List<Wish> getAllWishes() {
-        System.out.println("Getting all wishes from Postgres");
+        Log.debug("Getting all wishes");
 
         String sql = "SELECT * FROM wishes";
 
@@ -82,7 +169,7 @@ public class WishStorePostgres {
                 int beneficiaryId = wishes.getInt("beneficiaryId");
                 Wish wish = new Wish(id, productName, quantity, beneficiaryId);
                 wishesList.add(wish);
-                System.out.println("Wish from db: " + wish.id + " " + wish.productName + " " + wish.quantity);
+                Log.debugSampled("Wish from db", "wishId", wish.id, "productName", wish.productName, "quantity", wish.quantity);
             }
 
             return wishesList;
@@ -95,8 +182,76 @@ public class WishStorePostgres {
 
     }
 
+    /**
+     * Stream every wish to the consumer through a server-side cursor, without loading the table into memory.
+     */
+    @Override
+    public void forEachWish(RowConsumer<Wish> consumer) throws IOException {
+        Log.debug("Streaming all wishes");
+
+        String sql = "SELECT id, productName, quantity, beneficiaryId FROM wishes";
+
+        try (Connection connection = getConnection()) {
+            // Postgres only honours the fetch size inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet wishes = preparedStatement.executeQuery()) {
+                    while (wishes.next()) {
+                        consumer.accept(new Wish(
+                                wishes.getString("id"),
+                                wishes.getString("productName"),
+                                wishes.getInt("quantity"),
+                                wishes.getInt("beneficiaryId")));
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            Log.error("Streaming wishes failed", e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * One page of wishes ordered by id, seeking past the cursor on the primary key index instead of scanning the table.
+     */
+    @Override
+    public Page<Wish> getWishesPage(PageRequest pageRequest) {
+        String sql = pageRequest.after() == null
+                ? "SELECT id, productName, quantity, beneficiaryId FROM wishes ORDER BY id LIMIT ?"
+                : "SELECT id, productName, quantity, beneficiaryId FROM wishes WHERE id > ? ORDER BY id LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            int index = 1;
+            if (pageRequest.after() != null) {
+                preparedStatement.setString(index++, pageRequest.after());
+            }
+            // one extra row tells us whether there is a next page
+            preparedStatement.setInt(index, pageRequest.limit() + 1);
+
+            List<Wish> wishes = new ArrayList<>(pageRequest.limit() + 1);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    wishes.add(new Wish(
+                            resultSet.getString("id"),
+                            resultSet.getString("productName"),
+                            resultSet.getInt("quantity"),
+                            resultSet.getInt("beneficiaryId")));
+                }
+            }
+            return Page.fromLookahead(wishes, pageRequest.limit(), wish -> wish.id);
+        } catch (SQLException e) {
+            Log.error("Reading wish page failed", e, "after", pageRequest.after());
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
     public List<Wish> getWishesForBeneficiary(int beneficiaryId) {
-        System.out.println("Getting wishes for beneficiaryId " + beneficiaryId + " from Postgres");
+        Log.debug("Getting wishes for beneficiary", "beneficiaryId", beneficiaryId);
 
         String sql = "SELECT * FROM wishes WHERE beneficiaryId = ?";
 
@@ -117,7 +272,7 @@ public class WishStorePostgres {
                 int benId = wishes.getInt("beneficiaryId");
                 Wish wish = new Wish(id, productName, quantity, benId);
                 wishesForBeneficiary.add(wish);
-                System.out.println("Wish from db: " + wish.id + " " + wish.productName + " " + wish.quantity);
+                Log.debugSampled("Wish from db", "wishId", wish.id, "productName", wish.productName, "quantity", wish.quantity);
             }
 
             return wishesForBeneficiary;
@@ -128,9 +283,69 @@ public class WishStorePostgres {
         }
     }
 
+    /**
+     * Replace a wish of a beneficiary with a new wish in one statement: the delete and the insert both
+     * happen or neither does, and only a wish owned by the beneficiary of the new wish is replaced.
+     *
+     * @return the deleted and inserted wish, or empty when the beneficiary has no wish with that id
+     */
+    @Override
+    public Optional<Replacement> replaceWish(String idOfWishToBeReplaced, Wish newWish) {
+        String sql = """
+                WITH deleted AS (
+                    DELETE FROM wishes WHERE id = ? AND beneficiaryId = ?
+                    RETURNING id, productName, quantity, beneficiaryId
+                ), inserted AS (
+                    INSERT INTO wishes (id, productName, quantity, beneficiaryId)
+                    SELECT ?, ?, ?, beneficiaryId FROM deleted
+                    RETURNING id, productName, quantity, beneficiaryId
+                )
+                SELECT true AS deleted, * FROM deleted
+                UNION ALL
+                SELECT false AS deleted, * FROM inserted
+                """;
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setString(1, idOfWishToBeReplaced);
+            preparedStatement.setInt(2, newWish.beneficiaryId);
+            preparedStatement.setString(3, newWish.id);
+            preparedStatement.setString(4, newWish.productName);
+            preparedStatement.setInt(5, newWish.quantity);
+
+            Wish deleted = null;
+            Wish inserted = null;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    Wish wish = new Wish(
+                            resultSet.getString("id"),
+                            resultSet.getString("productName"),
+                            resultSet.getInt("quantity"),
+                            resultSet.getInt("beneficiaryId"));
+                    if (resultSet.getBoolean("deleted")) {
+                        deleted = wish;
+                    } else {
+                        inserted = wish;
+                    }
+                }
+            }
+            if (deleted == null || inserted == null) {
+                Log.debug("No wish to replace", "wishId", idOfWishToBeReplaced, "beneficiaryId", newWish.beneficiaryId);
+                return Optional.empty();
+            }
+            Log.debug("Replaced wish", "deletedWishId", deleted.id, "insertedWishId", inserted.id);
+            return Optional.of(new Replacement(deleted, inserted));
+        } catch (SQLException e) {
+            Log.error("Replacing wish failed", e, "wishId", idOfWishToBeReplaced);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
     public void deleteWish(String id) {
         // Placeholder for deleting the wish from a PostgreSQL database
-        System.out.println("Deleting wish with id " + id + " from PostgreSQL");
+        Log.debug("Deleting wish", "wishId", id);
 
         String sql = "DELETE FROM wishes WHERE id = ?";
 
@@ -141,16 +356,17 @@ public class WishStorePostgres {
             preparedStatement.setString(1, id);
 
             int rowsAffected = preparedStatement.executeUpdate();
-            System.out.println("Rows deleted: " + rowsAffected);
+            Log.debug("Wish deleted", "wishId", id, "rows", rowsAffected);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    @Override
     public Optional<Wish> getWish(String id) {
         // get wish from db for id id
-        System.out.println("Getting wish with id " + id + " from PostgreSQL");
+        Log.debug("Getting wish", "wishId", id);
 
         String sql = "SELECT * FROM wishes WHERE id = ?";
         try (Connection connection = getConnection();
@@ -165,11 +381,11 @@ public class WishStorePostgres {
                 int quantity = resultSet.getInt("quantity");
                 int beneficiaryId = resultSet.getInt("beneficiaryId");
                 Wish wish = new Wish(id, productName, quantity, beneficiaryId);
-                System.out.println("Wish found: " + wish.id + " " + wish.productName + " " + wish.quantity);
+                Log.debug("Wish found", "wishId", wish.id, "productName", wish.productName, "quantity", wish.quantity);
                 return Optional.of(wish);
             } else {
-                System.out.println("No wish found with id: " + id);
-                return null;
+                Log.debug("No wish found", "wishId", id);
+                return Optional.empty();
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -0,0 +1,239 @@
+package cloud.dpgmedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for wish inserts: {@link #storeWishWithinQuota(Wish, int)} queues the wish and waits, while one
+ * writer thread collects queued wishes and stores them with {@link WishStore#storeWishesWithinQuota(List, int)},
+ * one transaction and one commit for the whole batch.
+ * <p>
+ * A batch is written once it has batchSize wishes or maxDelayMillis after its first wish arrived, whichever
+ * comes first. The caller only returns when the batch that holds its wish has committed, so a 201 still means
+ * the wish is durable. Under load thousands of inserts share a few dozen commits; a lone insert waits at most
+ * maxDelayMillis longer. When the queue is full callers wait for room, which slows clients down instead of
+ * letting the backlog grow without bound.
+ * <p>
+ * If a batch fails as a whole, e.g. because one wish has an id that is taken, its wishes are retried one by
+ * one so only the failing wish reports the error. All other methods go straight to the wrapped store.
+ * <p>
+ * Callers give up after {@value #TIMEOUT_MILLIS} ms, waiting for room in the queue or for their batch. A wish
+ * that timed out may still be written afterwards. {@link #close()} writes what is queued and stops the writer.
+ */
+public class WishStoreWriteBehind implements WishStore, AutoCloseable {
+
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Counters since startup.
+     *
+     * @param fallbacks batches that failed and were retried wish by wish
+     */
+    public record Stats(long wishes, long batches, long fallbacks, int queued) {}
+
+    private record PendingWish(Wish wish, int maxWishes, CompletableFuture<WishInsertOutcome> outcome) {}
+
+    private final WishStore delegate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingWish> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder wishes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public WishStoreWriteBehind(WishStore delegate, int batchSize, long maxDelayMillis, int queueCapacity) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::writeBatches, "wish-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public WishInsertOutcome storeWishWithinQuota(Wish wish, int maxWishes) {
+        if (closed) {
+            throw new IllegalStateException("Wish write-behind is closed");
+        }
+        PendingWish pending = new PendingWish(wish, maxWishes, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out queueing wish " + wish.id);
+            }
+            return pending.outcome().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while storing wish " + wish.id);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out waiting for the batch of wish " + wish.id);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Write the wishes that are queued, then stop the writer. Waits at most as long as callers wait for a batch.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // wakes the writer if it is waiting for wishes, it writes what it collected before it stops
+        writer.interrupt();
+        try {
+            writer.join(TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(wishes.sum(), batches.sum(), fallbacks.sum(), queue.size());
+    }
+
+    private void writeBatches() {
+        List<PendingWish> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // close() wakes the writer, the wishes collected so far are still written below
+            }
+            try {
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (RuntimeException e) {
+                // write completes every outcome itself, this only keeps the writer alive for unexpected errors
+                Log.error("Writing wish batch failed", e, "wishes", batch.size());
+                batch.forEach(pending -> pending.outcome().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Add wishes to the batch until it is full or maxDelayMillis after the first one. Once closed only takes
+     * what is queued already, without waiting.
+     */
+    private void collect(List<PendingWish> batch) throws InterruptedException {
+        PendingWish first = closed ? queue.poll() : queue.take();
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < batchSize) {
+            // take whatever is queued already without waiting, only wait when the queue is empty
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || closed) {
+                break;
+            }
+            PendingWish next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<PendingWish> batch) {
+        // The quota is the same for every API insert, group by it anyway so a batch never mixes rules
+        Map<Integer, List<PendingWish>> byQuota = new LinkedHashMap<>();
+        for (PendingWish pending : batch) {
+            byQuota.computeIfAbsent(pending.maxWishes(), quota -> new ArrayList<>()).add(pending);
+        }
+        for (Map.Entry<Integer, List<PendingWish>> group : byQuota.entrySet()) {
+            List<PendingWish> pendings = group.getValue();
+            List<Wish> wishesToStore = new ArrayList<>(pendings.size());
+            for (PendingWish pending : pendings) {
+                wishesToStore.add(pending.wish());
+            }
+            try {
+                List<WishInsertOutcome> outcomes = delegate.storeWishesWithinQuota(wishesToStore, group.getKey());
+                batches.increment();
+                wishes.add(pendings.size());
+                for (int i = 0; i < pendings.size(); i++) {
+                    pendings.get(i).outcome().complete(outcomes.get(i));
+                }
+            } catch (RuntimeException e) {
+                Log.warn("Wish batch failed, storing the wishes one by one", "wishes", pendings.size(), "error", e.getMessage());
+                fallbacks.increment();
+                for (PendingWish pending : pendings) {
+                    try {
+                        pending.outcome().complete(delegate.storeWishWithinQuota(pending.wish(), pending.maxWishes()));
+                        wishes.increment();
+                    } catch (RuntimeException single) {
+                        pending.outcome().completeExceptionally(single);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void storeWish(Wish wish) {
+        delegate.storeWish(wish);
+    }
+
+    @Override
+    public List<WishInsertOutcome> storeWishesWithinQuota(List<Wish> wishes, int maxWishes) {
+        // already one transaction
+        return delegate.storeWishesWithinQuota(wishes, maxWishes);
+    }
+
+    @Override
+    public List<Wish> getAllWishes() {
+        return delegate.getAllWishes();
+    }
+
+    @Override
+    public void forEachWish(RowConsumer<Wish> consumer) throws IOException {
+        delegate.forEachWish(consumer);
+    }
+
+    @Override
+    public Page<Wish> getWishesPage(PageRequest pageRequest) {
+        return delegate.getWishesPage(pageRequest);
+    }
+
+    @Override
+    public List<Wish> getWishesForBeneficiary(int beneficiaryId) {
+        return delegate.getWishesForBeneficiary(beneficiaryId);
+    }
+
+    @Override
+    public Optional<Replacement> replaceWish(String idOfWishToBeReplaced, Wish newWish) {
+        return delegate.replaceWish(idOfWishToBeReplaced, newWish);
+    }
+
+    @Override
+    public void deleteWish(String id) {
+        delegate.deleteWish(id);
+    }
+
+    @Override
+    public Optional<Wish> getWish(String id) {
+        return delegate.getWish(id);
+    }
+}
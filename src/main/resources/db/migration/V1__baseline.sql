@@ -0,0 +1,57 @@
+-- Schema as created by People.pgsql and wishes.pgsql. Every statement is idempotent so databases
+-- initialised by docker-entrypoint-initdb.d can be brought under migration control as they are.
+DO $$
+BEGIN
+    CREATE TYPE behavior_enum AS ENUM ('naughty', 'nice');
+EXCEPTION
+    WHEN duplicate_object THEN NULL;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS people (
+    id SERIAL PRIMARY KEY,
+    firstName VARCHAR(255),
+    lastName VARCHAR(255),
+    dateOfBirth DATE,
+    timeOfRegistration TIMESTAMP,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    version INTEGER,
+    behavior behavior_enum DEFAULT 'nice'
+);
+
+CREATE TABLE IF NOT EXISTS wishes (
+    id VARCHAR(36) PRIMARY KEY,
+    productName VARCHAR(120) NOT NULL,
+    quantity INTEGER NOT NULL,
+    beneficiaryId INTEGER NOT NULL,
+    CONSTRAINT fk_beneficiary FOREIGN KEY (beneficiaryId)
+    REFERENCES people (id)
+    ON DELETE CASCADE
+);
+
+CREATE OR REPLACE FUNCTION store_wish_within_quota(
+    p_id VARCHAR(36),
+    p_product_name VARCHAR(120),
+    p_quantity INTEGER,
+    p_beneficiary_id INTEGER,
+    p_max_wishes INTEGER
+) RETURNS TEXT AS $$
+DECLARE
+    current_wishes INTEGER;
+BEGIN
+    PERFORM 1 FROM people WHERE id = p_beneficiary_id FOR NO KEY UPDATE;
+    IF NOT FOUND THEN
+        RETURN 'beneficiary_not_found';
+    END IF;
+
+    SELECT count(*) INTO current_wishes FROM wishes WHERE beneficiaryId = p_beneficiary_id;
+    IF current_wishes >= p_max_wishes THEN
+        RETURN 'quota_exceeded';
+    END IF;
+
+    INSERT INTO wishes (id, productName, quantity, beneficiaryId)
+    VALUES (p_id, p_product_name, p_quantity, p_beneficiary_id);
+    RETURN 'inserted';
+END;
+$$ LANGUAGE plpgsql;
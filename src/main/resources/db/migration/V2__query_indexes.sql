@@ -0,0 +1,11 @@
+-- migration: no-transaction
+-- Built CONCURRENTLY so inserts and deletes on the large tables keep running while the indexes are built
+
+-- Quota check, listing per beneficiary and the ON DELETE CASCADE from people
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_wishes_beneficiary_id ON wishes (beneficiaryId);
+
+-- Filtering people by behavior
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_people_behavior ON people (behavior);
+
+-- Bounding box lookups on the address location
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_people_location ON people (latitude, longitude);
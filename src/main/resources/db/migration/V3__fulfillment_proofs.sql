@@ -0,0 +1,14 @@
+-- Result of mining a wish, kept so retried fulfillments do not mine again
+CREATE TABLE IF NOT EXISTS fulfillment_proofs (
+    wishId VARCHAR(36) PRIMARY KEY,
+    santaHash CHAR(64) NOT NULL,
+    blockHeader TEXT NOT NULL,
+    nonce INTEGER NOT NULL,
+    maxHashValue CHAR(64) NOT NULL,
+    hashesTried BIGINT NOT NULL,
+    durationMillis BIGINT NOT NULL,
+    fulfilledAt TIMESTAMP NOT NULL,
+    CONSTRAINT fk_fulfilled_wish FOREIGN KEY (wishId)
+    REFERENCES wishes (id)
+    ON DELETE CASCADE
+);
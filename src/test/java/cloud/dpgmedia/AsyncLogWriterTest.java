@@ -0,0 +1,96 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLogWriterTest extends TestCase {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final AsyncLogWriter writer = new AsyncLogWriter(16, new PrintStream(output, true, StandardCharsets.UTF_8));
+
+    private String written() {
+        writer.flush(5000);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    public void testRecordIsWrittenAsKeyValuePairs() {
+        writer.append(Log.Level.INFO, "Wish stored", null, new Object[]{"wishId", "w1", "beneficiaryId", 3});
+
+        String line = written();
+        assertTrue(line, line.startsWith("ts="));
+        assertTrue(line, line.contains(" level=INFO thread=main msg=\"Wish stored\" wishId=w1 beneficiaryId=3\n"));
+    }
+
+    public void testValuesAreQuotedWhenNeeded() {
+        StringBuilder line = new StringBuilder();
+        AsyncLogWriter.appendValue(line, "plain");
+        line.append(' ');
+        AsyncLogWriter.appendValue(line, "a \"quoted\"\nvalue");
+        line.append(' ');
+        AsyncLogWriter.appendValue(line, "");
+        line.append(' ');
+        AsyncLogWriter.appendValue(line, null);
+        assertEquals("plain \"a \\\"quoted\\\"\\nvalue\" \"\" null", line.toString());
+    }
+
+    public void testErrorIncludesStackTrace() {
+        writer.append(Log.Level.ERROR, "Job failed", new IllegalStateException("boom"), new Object[]{"jobId", "j1"});
+
+        String line = written();
+        assertTrue(line, line.contains("msg=\"Job failed\" jobId=j1 error=\"java.lang.IllegalStateException: boom\"\n"));
+        assertTrue(line, line.contains("at cloud.dpgmedia.AsyncLogWriterTest.testErrorIncludesStackTrace"));
+    }
+
+    public void testRecordsKeepTheirOrder() {
+        for (int i = 0; i < 1000; i++) {
+            writer.append(Log.Level.DEBUG, "Row", null, new Object[]{"row", i});
+            if (i % 16 == 15) {
+                writer.flush(5000);
+            }
+        }
+        String[] lines = written().split("\n");
+        assertEquals(1000, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i], lines[i].endsWith(" row=" + i));
+        }
+    }
+
+    public void testFullBufferDropsRecordsInsteadOfBlocking() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocked = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        AsyncLogWriter stuck = new AsyncLogWriter(4, new PrintStream(blocked, false, StandardCharsets.UTF_8));
+        stuck.append(Log.Level.INFO, "first", null, new Object[0]);
+        // the writer took the first record off the buffer and now hangs on the output
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(stuck.append(Log.Level.INFO, "queued", null, new Object[0]));
+        }
+        assertFalse(stuck.append(Log.Level.INFO, "dropped", null, new Object[0]));
+        assertEquals(1, stuck.dropped());
+        release.countDown();
+    }
+}
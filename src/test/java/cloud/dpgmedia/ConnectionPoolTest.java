@@ -0,0 +1,123 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPoolTest extends TestCase {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicBoolean valid = new AtomicBoolean(true);
+
+    // Physical connection stand-in that only knows whether it is closed and valid
+    private Connection fakeConnection() {
+        opened.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        closed.set(true);
+                        yield null;
+                    }
+                    case "isClosed" -> closed.get();
+                    case "isValid" -> valid.get();
+                    case "getAutoCommit" -> true;
+                    case "toString" -> "fake";
+                    default -> null;
+                });
+    }
+
+    public void testReturnedConnectionIsReused() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 2, 60_000, 1_000, 1);
+        try {
+            try (Connection connection = pool.getConnection()) {
+                assertFalse(connection.isClosed());
+            }
+            try (Connection connection = pool.getConnection()) {
+                assertFalse(connection.isClosed());
+            }
+            assertEquals("second borrow should reuse the first physical connection", 1, opened.get());
+            assertEquals(2, pool.getStats().acquisitions());
+            assertEquals(1, pool.getStats().idle());
+        } finally {
+            pool.close();
+        }
+    }
+
+    public void testAcquireTimesOutWhenPoolIsExhausted() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 50, 1);
+        try (Connection ignored = pool.getConnection()) {
+            try {
+                pool.getConnection();
+                fail("a second borrower should time out when max size is 1");
+            } catch (SQLTimeoutException e) {
+                assertEquals(1, pool.getStats().acquireTimeouts());
+                assertEquals(1, pool.getStats().total());
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    public void testAcquireTimerOnlyCountsWhileOpen() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 50, 1);
+        try (Connection ignored = pool.getConnection()) {
+            ConnectionPool.AcquireTimer outer = ConnectionPool.timeAcquires();
+            try (ConnectionPool.AcquireTimer inner = ConnectionPool.timeAcquires()) {
+                pool.getConnection();
+                fail("a second borrower should time out when max size is 1");
+            } catch (SQLTimeoutException e) {
+                // waited the 50 ms acquire timeout
+            }
+            outer.close();
+            assertTrue(outer.nanos() >= 40_000_000L);
+
+            long counted = outer.nanos();
+            try {
+                pool.getConnection();
+                fail("a second borrower should time out when max size is 1");
+            } catch (SQLTimeoutException e) {
+                assertEquals("a closed timer stops counting", counted, outer.nanos());
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    public void testClosedLeaseCannotBeUsed() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 1_000, 1);
+        try {
+            Connection connection = pool.getConnection();
+            connection.close();
+            assertTrue(connection.isClosed());
+            try {
+                connection.createStatement();
+                fail("a returned connection should not be usable");
+            } catch (SQLException e) {
+                // expected
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    public void testInvalidIdleConnectionIsReplaced() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::fakeConnection, 0, 1, 60_000, 1_000, 1);
+        try {
+            pool.getConnection().close();
+            // Let the connection age past the validation bypass window
+            Thread.sleep(600);
+            valid.set(false);
+            pool.getConnection().close();
+            assertEquals(2, opened.get());
+            assertEquals(1, pool.getStats().destroyed());
+        } finally {
+            pool.close();
+        }
+    }
+}
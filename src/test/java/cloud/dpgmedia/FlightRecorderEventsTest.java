@@ -0,0 +1,95 @@
+package cloud.dpgmedia;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class FlightRecorderEventsTest extends TestCase {
+
+    private Recording recording;
+
+    @Override
+    protected void setUp() {
+        recording = new Recording();
+        recording.enable("cloud.dpgmedia.StoreCall");
+        recording.enable("cloud.dpgmedia.MiningRun");
+        recording.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        recording.close();
+    }
+
+    private List<RecordedEvent> recordedEvents(String name) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("wishkeeper", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testStoreCallsAreRecordedWithRows() throws IOException {
+        PeopleStore people = StoreMetrics.timed(PeopleStore.class, new PeopleStoreInMemory(), "people");
+        for (int i = 0; i < 3; i++) {
+            people.registerPerson(new Person(Optional.empty(), "Jane", "Doe", LocalDate.of(2010, 5, 15), LocalDateTime.now(),
+                    new Location(50.0, 5.0), Behavior.NICE, 1));
+        }
+        people.forEachPerson(person -> {
+        });
+        people.getAllPeople();
+
+        List<RecordedEvent> events = recordedEvents("cloud.dpgmedia.StoreCall");
+        assertEquals(5, events.size());
+        RecordedEvent streamed = events.get(3);
+        assertEquals("PeopleStoreInMemory", streamed.getString("storeClass"));
+        assertEquals("forEachPerson", streamed.getString("method"));
+        assertEquals(3, streamed.getLong("rows"));
+        assertEquals(0, streamed.getDuration("connectionAcquireTime").toNanos());
+        assertEquals("getAllPeople", events.get(4).getString("method"));
+        assertEquals(3, events.get(4).getLong("rows"));
+    }
+
+    public void testMiningRunIsRecorded() throws IOException {
+        BigInteger maxHashValue = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE).divide(BigInteger.valueOf(16));
+        MiningRunEvent event = new MiningRunEvent();
+        event.begin();
+        event.end("wish-1", 1234.5, maxHashValue, 42, true);
+
+        List<RecordedEvent> events = recordedEvents("cloud.dpgmedia.MiningRun");
+        assertEquals(1, events.size());
+        assertEquals("wish-1", events.get(0).getString("wishId"));
+        assertEquals(1234.5, events.get(0).getDouble("distanceKm"));
+        assertEquals(16, events.get(0).getLong("difficulty"));
+        assertEquals(42, events.get(0).getLong("noncesTried"));
+        assertTrue(events.get(0).getBoolean("found"));
+    }
+
+    public void testNothingIsRecordedWhenDisabled() throws IOException {
+        recording.disable("cloud.dpgmedia.StoreCall");
+        PeopleStore people = StoreMetrics.timed(PeopleStore.class, new PeopleStoreInMemory(), "people");
+        people.getAllPeople();
+
+        assertTrue(recordedEvents("cloud.dpgmedia.StoreCall").isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class FulfillmentJobsTest extends TestCase {
+
+    private static final BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
+
+    private ExecutorService miningPool;
+
+    protected void setUp() {
+        miningPool = Executors.newFixedThreadPool(2);
+    }
+
+    protected void tearDown() {
+        miningPool.shutdownNow();
+    }
+
+    public void testJobIsQueuedAndCompletes() throws InterruptedException {
+        List<FulfillmentProof> proofs = new CopyOnWriteArrayList<>();
+        FulfillmentJobs jobs = new FulfillmentJobs(new ParallelMiner(miningPool, 2), proofs::add, 1, 10, 60_000);
+        FulfillmentJob job = jobs.submit("wish-1", "2025-09-23T16:04:51", MAX_HASH_VALUE.divide(BigInteger.valueOf(256)), "pony");
+
+        assertSame(job, jobs.get(job.id).orElseThrow());
+        for (int i = 0; i < 100 && !job.isFinished(); i++) {
+            Thread.sleep(50);
+        }
+
+        FulfillmentJob.StatusView view = job.toStatusView();
+        assertEquals(FulfillmentJob.Status.DONE, view.status());
+        assertEquals("wish-1", view.wishId());
+        assertEquals(HashCollision.getSantaHash(view.blockHeader()), view.santaHash());
+        assertTrue(view.hashesTried() >= 1);
+        assertEquals(1, proofs.size());
+        assertEquals("wish-1", proofs.get(0).wishId());
+        assertTrue(proofs.get(0).verify());
+    }
+
+    public void testFullQueueIsRejected() throws InterruptedException {
+        // Zero target never succeeds, so the single worker stays busy with the first job
+        FulfillmentJobs jobs = new FulfillmentJobs(new ParallelMiner(miningPool, 2), proof -> {}, 1, 1, 60_000);
+        FulfillmentJob busy = jobs.submit("busy", "ts", BigInteger.ZERO, "pony");
+        FulfillmentJob queued = jobs.submit("queued", "ts", BigInteger.ZERO, "pony");
+        try {
+            jobs.submit("rejected", "ts", BigInteger.ZERO, "pony");
+            fail("a third job should not fit in a queue of one");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        assertTrue(jobs.shutdownNow(5_000));
+        assertEquals(FulfillmentJob.Status.FAILED, busy.getStatus());
+        assertEquals(FulfillmentJob.Status.FAILED, queued.getStatus());
+    }
+}
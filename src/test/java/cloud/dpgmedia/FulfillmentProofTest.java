@@ -0,0 +1,51 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class FulfillmentProofTest extends TestCase {
+
+    private static final BigInteger TARGET = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16)
+            .divide(BigInteger.valueOf(256));
+
+    private static FulfillmentProof mined() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ParallelMiner.Result result = new ParallelMiner(pool, 2).mine("2025-09-23T16:04:51", TARGET, "pony").orElseThrow();
+            return FulfillmentProof.from("wish-1", TARGET, result);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public void testMinedProofVerifies() {
+        FulfillmentProof proof = mined();
+        assertEquals(String.format("%064x", TARGET), proof.maxHashValue());
+        assertTrue(proof.verify());
+    }
+
+    public void testTamperedProofDoesNotVerify() {
+        FulfillmentProof proof = mined();
+        FulfillmentProof otherHeader = new FulfillmentProof(proof.wishId(), proof.santaHash(), proof.blockHeader() + "x",
+                proof.nonce(), proof.maxHashValue(), proof.hashesTried(), proof.durationMillis(), proof.fulfilledAt());
+        FulfillmentProof easierTarget = new FulfillmentProof(proof.wishId(), proof.santaHash(), proof.blockHeader(),
+                proof.nonce(), String.format("%064x", TARGET.multiply(BigInteger.TWO)), proof.hashesTried(), proof.durationMillis(), proof.fulfilledAt());
+        assertFalse(otherHeader.verify());
+        assertFalse(easierTarget.verify());
+    }
+
+    public void testResponseTextMatchesSynchronousFulfillment() {
+        FulfillmentProof proof = mined();
+        assertEquals("Found valid santa hash: " + proof.santaHash() + " for block header: " + proof.blockHeader()
+                + " in " + proof.durationMillis() + " ms", proof.toResponseText());
+    }
+
+    public void testFulfilledAtIsWrittenAsIsoDate() {
+        JsonNode json = Json.MAPPER.valueToTree(mined());
+        assertTrue(json.get("fulfilledAt").isTextual());
+    }
+}
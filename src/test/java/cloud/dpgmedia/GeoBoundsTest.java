@@ -0,0 +1,48 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+public class GeoBoundsTest extends TestCase {
+
+    public void testBoundsHoldTheCircle() {
+        Location ghent = new Location(51.0543, 3.7174);
+        GeoBounds bounds = GeoBounds.around(ghent, 100);
+        assertFalse(bounds.crossesAntimeridian());
+        // 100 km is about 0.9 degrees of latitude, and more degrees of longitude this far north
+        assertEquals(51.0543 - 0.899, bounds.minLatitude(), 0.01);
+        assertEquals(51.0543 + 0.899, bounds.maxLatitude(), 0.01);
+        assertTrue(bounds.maxLongitude() - 3.7174 > 1.4);
+        for (int bearing = 0; bearing < 360; bearing += 15) {
+            Location edge = destination(ghent, 99.9, bearing);
+            assertTrue("bearing " + bearing, bounds.contains(edge.getLatitude(), edge.getLongitude()));
+        }
+        assertFalse(bounds.contains(48.8566, 2.3522));
+    }
+
+    public void testBoundsAcrossTheAntimeridian() {
+        GeoBounds bounds = GeoBounds.around(new Location(-17.0, 179.9), 50);
+        assertTrue(bounds.crossesAntimeridian());
+        assertTrue(bounds.contains(-17.0, -179.9));
+        assertTrue(bounds.contains(-17.0, 179.8));
+        assertFalse(bounds.contains(-17.0, 0));
+    }
+
+    public void testBoundsAroundAPoleCoverAllLongitudes() {
+        GeoBounds bounds = GeoBounds.around(new Location(89.95, 0), 20);
+        assertEquals(90.0, bounds.maxLatitude());
+        assertEquals(-180.0, bounds.minLongitude());
+        assertEquals(180.0, bounds.maxLongitude());
+        assertTrue(bounds.contains(89.95, 180));
+    }
+
+    // point at distanceKm from start in the direction of bearing, degrees clockwise from north
+    private static Location destination(Location start, double distanceKm, double bearing) {
+        double angular = distanceKm / Location.EARTH_RADIUS_KM;
+        double latitude = Math.toRadians(start.getLatitude());
+        double theta = Math.toRadians(bearing);
+        double latitude2 = Math.asin(Math.sin(latitude) * Math.cos(angular) + Math.cos(latitude) * Math.sin(angular) * Math.cos(theta));
+        double longitude2 = Math.toRadians(start.getLongitude()) + Math.atan2(Math.sin(theta) * Math.sin(angular) * Math.cos(latitude),
+                Math.cos(angular) - Math.sin(latitude) * Math.sin(latitude2));
+        return new Location(Math.toDegrees(latitude2), Math.toDegrees(longitude2));
+    }
+}
@@ -0,0 +1,37 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public class JsonResponsesTest extends TestCase {
+
+    public void testWishFieldsMatchSingleWishResponse() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            JsonResponses.writeWish(generator, new Wish("w-1", "Red \"Bicycle\"", 2, 7));
+        }
+
+        assertEquals(Json.MAPPER.readTree("{\"id\":\"w-1\", \"productName\":\"Red \\\"Bicycle\\\"\", \"quantity\":2, \"beneficiaryId\":7}"),
+                Json.MAPPER.readTree(out.toString()));
+    }
+
+    public void testPersonFieldsMatchSinglePersonResponse() throws IOException {
+        Person person = new Person(Optional.of(3), "Jane", "Smith", LocalDate.of(1990, 7, 20),
+                LocalDateTime.of(2023, 10, 17, 16, 0), new Location(51.5, -0.125), Behavior.NICE, 2);
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            JsonResponses.writePerson(generator, person);
+        }
+
+        assertEquals(Json.MAPPER.readTree("{\"id\":\"3\", \"firstName\":\"Jane\", \"lastName\":\"Smith\", \"dateOfBirth\":\"1990-07-20\", "
+                        + "\"timeOfRegistration\":\"2023-10-17T16:00\", \"behavior\":\"NICE\", "
+                        + "\"addressLocation\":{\"latitude\":51.5, \"longitude\":-0.125}, \"version\":2}"),
+                Json.MAPPER.readTree(out.toString()));
+    }
+}
@@ -17,4 +17,13 @@ public class LocationTest extends TestCase {
         double distance2 = location2.distanceToNorthPole();
         assertEquals(Math.round(distance1), Math.round(distance2));
     }
+
+    public void testDistanceTo() {
+        Location brussels = new Location(50.8503, 4.3517);
+        Location amsterdam = new Location(52.3676, 4.9041);
+        // about 173 km as the crow flies
+        assertEquals(173, brussels.distanceTo(amsterdam), 1);
+        assertEquals(brussels.distanceTo(amsterdam), amsterdam.distanceTo(brussels), 1e-9);
+        assertEquals(0, brussels.distanceTo(brussels), 1e-9);
+    }
 }
@@ -0,0 +1,62 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+public class MetricsTest extends TestCase {
+
+    private final Metrics metrics = new Metrics();
+
+    public void testCounterIsRenderedWithLabels() {
+        metrics.counter("requests_total", "Requests", "context", "/api/wish", "status", "201").add(3);
+        metrics.counter("requests_total", "Requests", "context", "/api/wish", "status", "201").increment();
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("# HELP requests_total Requests\n"));
+        assertTrue(scrape.contains("# TYPE requests_total counter\n"));
+        assertTrue(scrape.contains("requests_total{context=\"/api/wish\",status=\"201\"} 4\n"));
+    }
+
+    public void testHistogramBucketsAreCumulative() {
+        Metrics.Histogram histogram = metrics.histogram("duration_seconds", "Duration", new double[]{0.1, 1});
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.5);
+        histogram.observe(5);
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("# TYPE duration_seconds histogram\n"));
+        assertTrue(scrape.contains("duration_seconds_bucket{le=\"0.1\"} 2\n"));
+        assertTrue(scrape.contains("duration_seconds_bucket{le=\"1\"} 3\n"));
+        assertTrue(scrape.contains("duration_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(scrape.contains("duration_seconds_sum 5.65\n"));
+        assertTrue(scrape.contains("duration_seconds_count 4\n"));
+        assertEquals(4, histogram.count());
+    }
+
+    public void testGaugeIsReadWhenScraped() {
+        int[] value = {1};
+        metrics.gauge("queue_depth", "Queue depth", () -> value[0]);
+        value[0] = 7;
+        assertTrue(metrics.scrape().contains("queue_depth 7\n"));
+    }
+
+    public void testLabelValuesAreEscaped() {
+        assertEquals("path=\"a\\\\b\\\"c\\nd\"", Metrics.labelKey("path", "a\\b\"c\nd"));
+    }
+
+    public void testUnknownMethodsShareOneLabel() {
+        assertEquals("GET", MetricsFilter.methodLabel("GET"));
+        assertEquals("DELETE", MetricsFilter.methodLabel("DELETE"));
+        assertEquals("OTHER", MetricsFilter.methodLabel("X-RANDOM-1234"));
+        assertEquals("OTHER", MetricsFilter.methodLabel("get"));
+    }
+
+    public void testNameCannotChangeType() {
+        metrics.counter("things", "Things");
+        try {
+            metrics.histogram("things", "Things", Metrics.LATENCY_BUCKETS);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
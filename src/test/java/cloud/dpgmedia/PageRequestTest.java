@@ -0,0 +1,44 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.util.List;
+
+public class PageRequestTest extends TestCase {
+
+    public void testNoPaginationParametersMeansFullListing() {
+        assertTrue(PageRequest.from(QueryParams.of(URI.create("/api/wish"))).isEmpty());
+    }
+
+    public void testAfterWithoutLimitUsesDefaultLimit() {
+        PageRequest pageRequest = PageRequest.from(QueryParams.of(URI.create("/api/wish?after=abc%20d"))).orElseThrow();
+        assertEquals("abc d", pageRequest.after());
+        assertEquals(PageRequest.DEFAULT_LIMIT, pageRequest.limit());
+    }
+
+    public void testLimitOutOfRangeIsRejected() {
+        try {
+            PageRequest.from(QueryParams.of(URI.create("/api/people?limit=0")));
+            fail("limit 0 should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("limit must be between 1 and 1000", e.getMessage());
+        }
+        try {
+            PageRequest.from(QueryParams.of(URI.create("/api/people?limit=ten")));
+            fail("a non numeric limit should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("limit must be an integer", e.getMessage());
+        }
+    }
+
+    public void testLookaheadRowSetsNextCursor() {
+        Page<String> page = Page.fromLookahead(List.of("a", "b", "c"), 2, value -> value);
+        assertEquals(List.of("a", "b"), page.items());
+        assertEquals("b", page.next());
+
+        Page<String> lastPage = Page.fromLookahead(List.of("a", "b"), 2, value -> value);
+        assertEquals(List.of("a", "b"), lastPage.items());
+        assertNull(lastPage.next());
+    }
+}
@@ -0,0 +1,49 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ParallelMinerTest extends TestCase {
+
+    private static final BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
+
+    public void testFoundHashMatchesBlockHeaderAndTarget() {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            BigInteger maxHashValue = MAX_HASH_VALUE.divide(BigInteger.valueOf(16 * 16 * 16));
+            LongAdder hashesTried = new LongAdder();
+            Optional<ParallelMiner.Result> result = new ParallelMiner(pool, 4)
+                    .mine("2025-09-23T16:04:51.686506301", maxHashValue, "pony", hashesTried);
+
+            assertTrue("a 3 zero target should be found quickly", result.isPresent());
+            String expectedHeader = "2025-09-23T16:04:51.686506301" + String.format("%064x", maxHashValue) + result.get().nonce() + "pony";
+            assertEquals(expectedHeader, result.get().blockHeader());
+            assertEquals(HashCollision.getSantaHash(expectedHeader), result.get().santaHash());
+            assertTrue(new BigInteger(result.get().santaHash(), 16).compareTo(maxHashValue) < 0);
+            assertTrue(hashesTried.sum() >= 1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public void testSingleWorkerFindsSameNonceAsSequentialSearch() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            BigInteger maxHashValue = MAX_HASH_VALUE.divide(BigInteger.valueOf(16 * 16));
+            ParallelMiner.Result result = new ParallelMiner(pool, 1).mine("ts", maxHashValue, "kite").orElseThrow();
+
+            int nonce = 0;
+            while (new BigInteger(HashCollision.getSantaHash("ts" + String.format("%064x", maxHashValue) + nonce + "kite"), 16).compareTo(maxHashValue) >= 0) {
+                nonce++;
+            }
+            assertEquals(nonce, result.nonce());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -82,4 +82,28 @@ public class PeopleHandlerUtilsTest extends TestCase {
         assertEquals("Doe", result.get().lastName());
         assertEquals(1, result.get().version());
     }
+
+    public void testParseRegisterPersonDtoIgnoresUnknownFieldsAndBehaviorCase() {
+        String json = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"dateOfBirth\":\"1990-01-01\",\"timeOfRegistration\":\"2023-10-10T14:30:00Z\",\"behavior\":\"naughty\",\"addressLocation\":{\"latitude\":50.0,\"longitude\":4.0,\"id\":7}}";
+        Optional<RegisterPersonDto> result = PeopleHandlerUtils.parseRegisterPersonDtoFrom(json);
+
+        assertTrue("Unknown fields, including a nested id, should be ignored", result.isPresent());
+        assertEquals(Behavior.NAUGHTY, result.get().behavior());
+        assertEquals(50.0, result.get().addressLocation().latitude());
+    }
+
+    public void testParseRegisterPersonDtoIncompleteLocation() {
+        String json = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"dateOfBirth\":\"1990-01-01\",\"behavior\":\"NICE\",\"addressLocation\":{\"latitude\":50.0}}";
+        Optional<RegisterPersonDto> result = PeopleHandlerUtils.parseRegisterPersonDtoFrom(json);
+
+        assertTrue("Should return empty Optional when longitude is missing", result.isEmpty());
+    }
+
+    public void testParseUpdatePersonDtoIdAsString() {
+        String json = "{\"id\":\"2\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"dateOfBirth\":\"1990-01-01\",\"behavior\":\"nice\",\"version\":1}";
+        Optional<UpdatePersonDto> result = PeopleHandlerUtils.parseUpdatePersonDto(json);
+
+        assertTrue(result.isPresent());
+        assertEquals(2, result.get().id());
+    }
 }
@@ -0,0 +1,110 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class PeopleImportTest extends TestCase {
+
+    private static List<Person> read(PeopleImport peopleImport, String upload) throws IOException {
+        List<Person> people = new ArrayList<>();
+        peopleImport.forEachValid(new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)), people::add);
+        return people;
+    }
+
+    public void testNdjsonSkipsInvalidLines() throws IOException {
+        PeopleImport peopleImport = new PeopleImport(PeopleImport.Format.NDJSON, 10);
+        List<Person> people = read(peopleImport, """
+                {"firstName":"Jane","lastName":"Smith","dateOfBirth":"1990-07-20","addressLocation":{"latitude":51.5,"longitude":-0.12},"behavior":"nice"}
+                {"firstName":"John","lastName":"Doe","dateOfBirth":"1985-01-02","addressLocation":{"latitude":95,"longitude":0},"behavior":"nice"}
+
+                {"firstName":"Kid","lastName":"Doe","dateOfBirth":"2015-03-04","addressLocation":{"latitude":10,"longitude":10},"behavior":"grumpy"}
+                not json
+                {"firstName":"Max","lastName":"Doe","dateOfBirth":"2012-05-06","addressLocation":{"latitude":10,"longitude":10},"behavior":"NAUGHTY"}
+                """);
+
+        assertEquals(2, people.size());
+        assertEquals("Jane", people.get(0).firstName);
+        assertEquals(Behavior.NAUGHTY, people.get(1).behavior);
+        assertEquals(1, people.get(1).version);
+        assertEquals(3, peopleImport.rejected());
+        assertEquals(2, peopleImport.errors().get(0).line());
+        assertEquals("Latitude must be between -90 and 90 degrees.", peopleImport.errors().get(0).error());
+        assertEquals(4, peopleImport.errors().get(1).line());
+    }
+
+    public void testCsvMapsColumnsByHeader() throws IOException {
+        PeopleImport peopleImport = new PeopleImport(PeopleImport.Format.CSV, 10);
+        List<Person> people = read(peopleImport, """
+                behavior,lastName,firstName,dateOfBirth,latitude,longitude
+                nice,"O""Brien, Jr",Sean,1970-12-24,53.35,-6.26
+                angry,Doe,John,1985-01-02,10,10
+                nice,Doe,,1985-01-02,10,10
+                nice,Doe,John,1985-01-02,10,200
+                """);
+
+        assertEquals(1, people.size());
+        assertEquals("O\"Brien, Jr", people.get(0).lastName);
+        assertEquals(-6.26, people.get(0).addressLocation.getLongitude());
+        assertEquals(3, peopleImport.rejected());
+        assertEquals("behavior must be naughty or nice", peopleImport.errors().get(0).error());
+        assertEquals("Missing required field: firstName", peopleImport.errors().get(1).error());
+        assertEquals(5, peopleImport.errors().get(2).line());
+    }
+
+    public void testNonFiniteCoordinatesAreRejected() throws IOException {
+        PeopleImport csvImport = new PeopleImport(PeopleImport.Format.CSV, 10);
+        List<Person> csvPeople = read(csvImport, """
+                firstName,lastName,dateOfBirth,latitude,longitude,behavior
+                Jane,Doe,1990-07-20,NaN,10,nice
+                John,Doe,1985-01-02,10,-Infinity,nice
+                """);
+        assertTrue(csvPeople.isEmpty());
+        assertEquals(2, csvImport.rejected());
+        assertEquals("latitude must be a number", csvImport.errors().get(0).error());
+        assertEquals("longitude must be a number", csvImport.errors().get(1).error());
+
+        PeopleImport ndjsonImport = new PeopleImport(PeopleImport.Format.NDJSON, 10);
+        List<Person> ndjsonPeople = read(ndjsonImport, """
+                {"firstName":"Jane","lastName":"Doe","dateOfBirth":"1990-07-20","addressLocation":{"latitude":"NaN","longitude":0},"behavior":"nice"}
+                """);
+        assertTrue(ndjsonPeople.isEmpty());
+        assertEquals(1, ndjsonImport.rejected());
+    }
+
+    public void testCsvWithoutExpectedHeaderIsRefused() throws IOException {
+        try {
+            read(new PeopleImport(PeopleImport.Format.CSV, 10), "name,age\nJane,30\n");
+            fail("an unknown header should refuse the whole upload");
+        } catch (IllegalArgumentException e) {
+            assertEquals("CSV header is missing column: firstName", e.getMessage());
+        }
+    }
+
+    public void testOnlyTheFirstErrorsAreKept() throws IOException {
+        PeopleImport peopleImport = new PeopleImport(PeopleImport.Format.NDJSON, 2);
+        read(peopleImport, "1\n2\n3\n4\n");
+        assertEquals(4, peopleImport.rejected());
+        assertEquals(2, peopleImport.errors().size());
+    }
+
+    public void testCopyRowQuotesText() {
+        Person person = new Person(Optional.empty(), "Jane \"JJ\"", "Smith, Sr", LocalDate.of(1990, 7, 20),
+                LocalDateTime.of(2024, 12, 1, 8, 30), new Location(51.5, -0.125), Behavior.NICE, 1);
+        assertEquals("\"Jane \"\"JJ\"\"\",\"Smith, Sr\",1990-07-20,2024-12-01T08:30,51.5,-0.125,nice,1\n",
+                PeopleStorePostgres.toCopyRow(person));
+    }
+
+    public void testContentTypeSelectsFormat() {
+        assertEquals(PeopleImport.Format.CSV, PeopleImport.Format.fromContentType("text/csv; charset=utf-8"));
+        assertEquals(PeopleImport.Format.NDJSON, PeopleImport.Format.fromContentType("application/x-ndjson"));
+        assertEquals(PeopleImport.Format.NDJSON, PeopleImport.Format.fromContentType(null));
+    }
+}
@@ -0,0 +1,170 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public class PeopleStoreInMemoryTest extends TestCase {
+
+    private final PeopleStoreInMemory store = new PeopleStoreInMemory();
+
+    private static Person person(String firstName) {
+        return new Person(Optional.empty(), firstName, "Doe", LocalDate.of(2010, 5, 15), LocalDateTime.now(),
+                new Location(50.0, 5.0), Behavior.NICE, 1);
+    }
+
+    private static Person personAt(String firstName, double latitude, double longitude) {
+        Person person = person(firstName);
+        person.addressLocation = new Location(latitude, longitude);
+        return person;
+    }
+
+    private static List<String> names(List<PeopleStore.Nearby> found) {
+        return found.stream().map(nearby -> nearby.person().firstName).toList();
+    }
+
+    public void testRegisterAssignsIncreasingIds() {
+        Person jane = store.registerPerson(person("Jane"));
+        Person john = store.registerPerson(person("John"));
+        assertEquals(1, (int) jane.id.get());
+        assertEquals(2, (int) john.id.get());
+        assertEquals("John", store.getPerson(2).firstName);
+        assertTrue(store.exists(1));
+        assertFalse(store.exists(3));
+    }
+
+    public void testUpdateRequiresNextVersion() {
+        Person registered = store.registerPerson(person("Jane"));
+
+        Person update = registered.copy();
+        update.firstName = "Janet";
+        update.increaseVersion();
+        store.updatePerson(update);
+        assertEquals("Janet", store.getPerson(1).firstName);
+        assertEquals(2, store.getPerson(1).version);
+
+        // a client that still has version 1
+        Person stale = registered.copy();
+        stale.increaseVersion();
+        try {
+            store.updatePerson(stale);
+            fail("an update based on an old version should be refused");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("optimistic lock"));
+        }
+    }
+
+    public void testUnknownPersonIsNotFound() {
+        try {
+            store.getPerson(42);
+            fail("there is no person 42");
+        } catch (RuntimeException e) {
+            assertEquals("Person with ID 42 not found.", e.getMessage());
+        }
+    }
+
+    public void testPagesFollowIdOrder() {
+        for (int i = 0; i < 5; i++) {
+            store.registerPerson(person("P" + i));
+        }
+        Page<Person> first = store.getPeoplePage(new PageRequest(null, 3));
+        assertEquals(3, first.items().size());
+        assertEquals("3", first.next());
+
+        Page<Person> last = store.getPeoplePage(new PageRequest("3", 3));
+        assertEquals(List.of(4, 5), last.items().stream().map(person -> person.id.get()).toList());
+        assertNull(last.next());
+
+        try {
+            store.getPeoplePage(new PageRequest("abc", 3));
+            fail("a cursor that is no person id should be refused");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testFailingImportStoresNobody() {
+        try {
+            store.copyPeople(sink -> {
+                sink.accept(person("Jane"));
+                throw new IOException("connection reset");
+            });
+            fail("the failing source should fail the import");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(store.getAllPeople().isEmpty());
+    }
+
+    public void testPeopleWithinRadiusNearestFirst() {
+        Location ghent = new Location(51.0543, 3.7174);
+        store.registerPerson(personAt("Antwerp", 51.2194, 4.4025));
+        store.registerPerson(personAt("Ghent", 51.0543, 3.7174));
+        store.registerPerson(personAt("Bruges", 51.2093, 3.2247));
+        store.registerPerson(personAt("Paris", 48.8566, 2.3522));
+
+        List<PeopleStore.Nearby> found = store.getPeopleWithinRadius(ghent, 60, 10);
+        assertEquals(List.of("Ghent", "Bruges", "Antwerp"), names(found));
+        assertEquals(0, found.get(0).distanceKm(), 1e-9);
+        assertEquals(ghent.distanceTo(new Location(51.2093, 3.2247)), found.get(1).distanceKm(), 1e-9);
+
+        assertEquals(List.of("Ghent", "Bruges"), names(store.getPeopleWithinRadius(ghent, 60, 2)));
+    }
+
+    public void testNearestPeopleWidensTheSearch() {
+        store.registerPerson(personAt("Paris", 48.8566, 2.3522));
+        store.registerPerson(personAt("Sydney", -33.8688, 151.2093));
+        store.registerPerson(personAt("Ghent", 51.0543, 3.7174));
+
+        assertEquals(List.of("Ghent", "Paris"), names(store.getNearestPeople(new Location(51.0, 3.7), 2)));
+        // fewer people than asked for, everyone is returned
+        assertEquals(List.of("Ghent", "Paris", "Sydney"), names(store.getNearestPeople(new Location(51.0, 3.7), 5)));
+    }
+
+    public void testUpdateMovesPersonInTheIndex() {
+        Person registered = store.registerPerson(personAt("Jane", 51.0543, 3.7174));
+        Location ghent = new Location(51.0543, 3.7174);
+        Location paris = new Location(48.8566, 2.3522);
+
+        Person moved = registered.copy();
+        moved.addressLocation = paris;
+        moved.increaseVersion();
+        store.updatePerson(moved);
+
+        assertTrue(store.getPeopleWithinRadius(ghent, 10, 10).isEmpty());
+        assertEquals(List.of("Jane"), names(store.getPeopleWithinRadius(paris, 10, 10)));
+    }
+
+    public void testSearchAcrossTheAntimeridianAndPoles() {
+        store.registerPerson(personAt("Fiji", -17.0, 179.95));
+        store.registerPerson(personAt("Samoa", -17.0, -179.95));
+        store.registerPerson(personAt("Svalbard", 89.9, 15.0));
+        store.registerPerson(personAt("Alert", 89.9, -165.0));
+
+        assertEquals(2, store.getPeopleWithinRadius(new Location(-17.0, 180.0), 20, 10).size());
+        // both are about 11 km from the pole, on opposite sides of it
+        assertEquals(2, store.getPeopleWithinRadius(new Location(90.0, 0.0), 15, 10).size());
+    }
+
+    public void testRadiusSearchMatchesFullScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            store.registerPerson(personAt("P" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        for (int i = 0; i < 50; i++) {
+            Location center = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            double radiusKm = 100 + random.nextDouble() * 3000;
+            List<String> expected = store.getAllPeople().stream()
+                    .filter(person -> center.distanceTo(person.addressLocation) <= radiusKm)
+                    .sorted((a, b) -> Double.compare(center.distanceTo(a.addressLocation), center.distanceTo(b.addressLocation)))
+                    .map(person -> person.firstName)
+                    .toList();
+            assertEquals(expected, names(store.getPeopleWithinRadius(center, radiusKm, 2000)));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PersonCacheTest extends TestCase {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Person load(int id) {
+        loads.incrementAndGet();
+        return person(id, 1);
+    }
+
+    private static Person person(int id, int version) {
+        return new Person(Optional.of(id), "Jane", "Doe", LocalDate.of(2000, 1, 1), LocalDateTime.now(),
+                new Location(51.0, 4.0), Behavior.NICE, version);
+    }
+
+    public void testSecondLookupIsAHit() {
+        PersonCache cache = new PersonCache(100, 60_000);
+        cache.getOrLoad(1, this::load);
+        cache.getOrLoad(1, this::load);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(1, cache.getStats().misses());
+    }
+
+    public void testCallersCannotChangeTheCachedPerson() {
+        PersonCache cache = new PersonCache(100, 60_000);
+        cache.getOrLoad(1, this::load).firstName = "Changed";
+        assertEquals("Jane", cache.getOrLoad(1, this::load).firstName);
+    }
+
+    public void testInvalidateForcesReload() {
+        PersonCache cache = new PersonCache(100, 60_000);
+        cache.getOrLoad(1, this::load);
+        cache.invalidate(1);
+        cache.getOrLoad(1, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().invalidations());
+    }
+
+    public void testLoadRacingWithInvalidationIsNotCached() {
+        PersonCache cache = new PersonCache(100, 60_000);
+        // The row is updated after the loader read version 1 but before the cache stores it
+        Person stale = cache.getOrLoad(1, id -> {
+            Person read = person(id, 1);
+            cache.invalidate(id);
+            return read;
+        });
+        assertEquals(1, stale.version);
+        Person fresh = cache.getOrLoad(1, id -> person(id, 2));
+        assertEquals(2, fresh.version);
+    }
+
+    public void testExpiredEntryIsReloaded() throws InterruptedException {
+        PersonCache cache = new PersonCache(100, 20);
+        cache.getOrLoad(1, this::load);
+        Thread.sleep(40);
+        cache.getOrLoad(1, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().expirations());
+    }
+
+    public void testSizeIsBounded() {
+        PersonCache cache = new PersonCache(32, 60_000);
+        for (int id = 0; id < 1_000; id++) {
+            cache.getOrLoad(id, this::load);
+        }
+        assertTrue(cache.getStats().size() <= 32);
+        assertEquals(1_000 - cache.getStats().size(), cache.getStats().evictions());
+    }
+
+    public void testFailedLoadIsNotCached() {
+        PersonCache cache = new PersonCache(100, 60_000);
+        try {
+            cache.getOrLoad(1, id -> {
+                throw new RuntimeException("Person with ID " + id + " not found.");
+            });
+            fail("loader exception should be passed on");
+        } catch (RuntimeException e) {
+            assertEquals(0, cache.getStats().size());
+        }
+    }
+
+    public void testZeroSizeDisablesCaching() {
+        PersonCache cache = new PersonCache(0, 60_000);
+        cache.getOrLoad(1, this::load);
+        cache.getOrLoad(1, this::load);
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,41 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+public class RequestTimingTest extends TestCase {
+
+    @Override
+    protected void tearDown() {
+        RequestTiming.setCurrent(null);
+    }
+
+    public void testSpansAreRenderedInOrderWithTotal() {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        timing.add("parse", 250_000);
+        timing.add("storeWishWithinQuota", 1_500_000);
+
+        String header = timing.header();
+        assertTrue(header, header.startsWith("parse;dur=0.250, storeWishWithinQuota;dur=1.500, total;dur="));
+    }
+
+    public void testRepeatedSpansAreSummed() {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        for (int i = 0; i < 12; i++) {
+            timing.add("getPerson", 100_000);
+        }
+
+        assertTrue(timing.header(), timing.header().startsWith("getPerson;dur=1.200;desc=\"12 calls\", total;dur="));
+    }
+
+    public void testRecordGoesToTheCurrentRequestOnly() {
+        RequestTiming.recordNanos("mining", 1_000_000);
+
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        RequestTiming.setCurrent(timing);
+        RequestTiming.recordNanos("mining", 2_000_000);
+        RequestTiming.setCurrent(null);
+        RequestTiming.recordNanos("mining", 4_000_000);
+
+        assertTrue(timing.header(), timing.header().startsWith("mining;dur=2.000, total;dur="));
+    }
+}
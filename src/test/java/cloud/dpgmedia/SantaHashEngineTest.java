@@ -0,0 +1,40 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+
+public class SantaHashEngineTest extends TestCase {
+
+    private static final BigInteger MAX_HASH_VALUE = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16);
+    private static final String TIMESTAMP = "2025-09-23T16:04:51.686506301";
+
+    public void testHashesMatchHashCollisionAcrossDigitBoundaries() {
+        BigInteger maxHashValue = MAX_HASH_VALUE.divide(BigInteger.valueOf(4096));
+        SantaHashEngine engine = new SantaHashEngine(TIMESTAMP, maxHashValue, "pony");
+        int[] nonces = {0, 9, 10, 99, 100, 5, 123_456, 1_000_000_000, Integer.MAX_VALUE - 1, 42};
+        for (int nonce : nonces) {
+            String blockHeader = TIMESTAMP + String.format("%064x", maxHashValue) + nonce + "pony";
+            String expected = HashCollision.getSantaHash(blockHeader);
+
+            boolean belowTarget = engine.tryNonce(nonce);
+
+            assertEquals(blockHeader, engine.blockHeader());
+            assertEquals(expected, engine.santaHash());
+            assertEquals(maxHashValue.compareTo(new BigInteger(expected, 16)) > 0, belowTarget);
+        }
+    }
+
+    public void testMultiByteProductName() {
+        SantaHashEngine engine = new SantaHashEngine(TIMESTAMP, MAX_HASH_VALUE, "slé ☃");
+        engine.tryNonce(77);
+        assertEquals(HashCollision.getSantaHash(TIMESTAMP + String.format("%064x", MAX_HASH_VALUE) + 77 + "slé ☃"), engine.santaHash());
+    }
+
+    public void testNothingIsBelowAZeroTarget() {
+        SantaHashEngine engine = new SantaHashEngine(TIMESTAMP, BigInteger.ZERO, "kite");
+        for (int nonce = 0; nonce < 1_000; nonce++) {
+            assertFalse(engine.tryNonce(nonce));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class SchemaMigratorTest extends TestCase {
+
+    public void testMigrationsLoadInVersionOrder() {
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.loadMigrations();
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrations.size());
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).version());
+        }
+    }
+
+    public void testChecksumIsStableAndCoversTheScript() {
+        SchemaMigrator.Migration first = SchemaMigrator.Migration.load("V1__baseline.sql");
+        SchemaMigrator.Migration again = SchemaMigrator.Migration.load("V1__baseline.sql");
+        SchemaMigrator.Migration other = SchemaMigrator.Migration.load("V2__query_indexes.sql");
+        assertEquals(64, first.checksum().length());
+        assertEquals(first.checksum(), again.checksum());
+        assertFalse(first.checksum().equals(other.checksum()));
+        assertEquals("query indexes", other.description());
+    }
+
+    public void testIndexMigrationCoversHotQueries() {
+        String script = SchemaMigrator.Migration.load("V2__query_indexes.sql").script();
+        assertTrue(script.contains("ON wishes (beneficiaryId)"));
+        assertTrue(script.contains("ON people (behavior)"));
+        assertTrue(script.contains("ON people (latitude, longitude)"));
+    }
+
+    public void testIndexesAreBuiltOutsideATransaction() {
+        SchemaMigrator.Migration indexes = SchemaMigrator.Migration.load("V2__query_indexes.sql");
+        assertFalse(indexes.transactional());
+        assertTrue(SchemaMigrator.Migration.load("V1__baseline.sql").transactional());
+
+        List<String> statements = indexes.statements();
+        assertEquals(3, statements.size());
+        for (String statement : statements) {
+            assertTrue(statement, statement.startsWith("CREATE INDEX CONCURRENTLY IF NOT EXISTS"));
+            assertFalse(statement, statement.contains(";") || statement.contains("--"));
+        }
+    }
+
+    public void testBadFileNameIsRejected() {
+        try {
+            SchemaMigrator.Migration.load("baseline.sql");
+            fail("file names without a version should be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cloud.dpgmedia;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class WishBatchHandlerTest extends TestCase {
+
+    private static List<WishBatchHandler.BatchItem> parse(String json, int maxSize) {
+        return WishBatchHandler.parseWishBatch(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), maxSize);
+    }
+
+    public void testElementsAreValidatedOneByOne() {
+        List<WishBatchHandler.BatchItem> items = parse("""
+                [{"productName":"Bike", "quantity":1, "beneficiaryId":1},
+                 {"productName":"Doll", "beneficiaryId":1},
+                 {"productName":"Kite", "quantity":-1, "beneficiaryId":2},
+                 42]""", 10);
+
+        assertEquals(4, items.size());
+        assertEquals("Bike", items.get(0).wish().productName);
+        assertNull(items.get(0).error());
+        assertEquals("Missing field: quantity", items.get(1).error());
+        assertEquals("Wish Quantity cannot be negative", items.get(2).error());
+        assertEquals("Invalid wish data", items.get(3).error());
+    }
+
+    public void testBodyMustBeAnArray() {
+        try {
+            parse("{\"productName\":\"Bike\", \"quantity\":1, \"beneficiaryId\":1}", 10);
+            fail("a single object is not a batch");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Request body must be a JSON array of wishes", e.getMessage());
+        }
+    }
+
+    public void testBatchSizeIsLimited() {
+        try {
+            parse("[{}, {}, {}]", 2);
+            fail("batches above the limit should be refused");
+        } catch (IllegalArgumentException e) {
+            assertEquals("A batch cannot contain more than 2 wishes", e.getMessage());
+        }
+    }
+
+    public void testResultsLineUpWithTheRequest() throws IOException {
+        List<WishBatchHandler.BatchItem> items = List.of(
+                new WishBatchHandler.BatchItem(new Wish("w-1", "Bike", 1, 1), null),
+                new WishBatchHandler.BatchItem(null, "Missing field: quantity"),
+                new WishBatchHandler.BatchItem(new Wish("w-2", "Kite", 1, 9), null));
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            WishBatchHandler.writeResults(generator, items,
+                    List.of(WishInsertOutcome.INSERTED, WishInsertOutcome.BENEFICIARY_NOT_FOUND));
+        }
+
+        JsonNode response = Json.MAPPER.readTree(out.toString());
+        assertEquals(1, response.get("inserted").asInt());
+        assertEquals(2, response.get("rejected").asInt());
+        JsonNode results = response.get("results");
+        assertEquals("inserted", results.get(0).get("status").asText());
+        assertEquals("w-1", results.get(0).get("wish").get("id").asText());
+        assertEquals("invalid", results.get(1).get("status").asText());
+        assertEquals(2, results.get(2).get("index").asInt());
+        assertEquals("beneficiary_not_found", results.get(2).get("status").asText());
+        assertEquals("No person found with id: 9", results.get(2).get("error").asText());
+    }
+}
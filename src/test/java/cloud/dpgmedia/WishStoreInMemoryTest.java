@@ -0,0 +1,181 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WishStoreInMemoryTest extends TestCase {
+
+    // people 1 to 1000 exist
+    private final WishStoreInMemory store = new WishStoreInMemory(id -> id >= 1 && id <= 1000);
+
+    public void testQuotaIsEnforcedPerBeneficiary() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(WishInsertOutcome.INSERTED, store.storeWishWithinQuota(new Wish("w" + i, "Kite", 1, 7), 3));
+        }
+        assertEquals(WishInsertOutcome.QUOTA_EXCEEDED, store.storeWishWithinQuota(new Wish("w3", "Kite", 1, 7), 3));
+        assertEquals(WishInsertOutcome.INSERTED, store.storeWishWithinQuota(new Wish("w4", "Kite", 1, 8), 3));
+        assertEquals(3, store.getWishesForBeneficiary(7).size());
+    }
+
+    public void testUnknownBeneficiaryIsRejected() {
+        assertEquals(WishInsertOutcome.BENEFICIARY_NOT_FOUND, store.storeWishWithinQuota(new Wish("w", "Kite", 1, 5000), 3));
+        try {
+            store.storeWish(new Wish("w", "Kite", 1, 5000));
+            fail("a wish for an unknown beneficiary should be rejected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertTrue(store.getAllWishes().isEmpty());
+    }
+
+    public void testConcurrentInsertsNeverExceedTheQuota() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WishInsertOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int beneficiaryId = 1 + i % 10;
+            outcomes.add(threads.submit(() -> {
+                start.await();
+                return store.storeWishWithinQuota(new Wish(UUID.randomUUID().toString(), "Kite", 1, beneficiaryId), 3);
+            }));
+        }
+        start.countDown();
+        int inserted = 0;
+        for (Future<WishInsertOutcome> outcome : outcomes) {
+            if (outcome.get() == WishInsertOutcome.INSERTED) {
+                inserted++;
+            }
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(30, inserted);
+        for (int beneficiaryId = 1; beneficiaryId <= 10; beneficiaryId++) {
+            assertEquals(3, store.getWishesForBeneficiary(beneficiaryId).size());
+        }
+    }
+
+    public void testBatchAdmitsWishesInListOrder() {
+        store.storeWish(new Wish("existing", "Kite", 1, 2));
+        List<WishInsertOutcome> outcomes = store.storeWishesWithinQuota(List.of(
+                new Wish("a", "Kite", 1, 2),
+                new Wish("b", "Kite", 1, 2),
+                new Wish("c", "Kite", 1, 2),
+                new Wish("d", "Kite", 1, 5000),
+                new Wish("e", "Kite", 1, 3)), 3);
+
+        assertEquals(List.of(WishInsertOutcome.INSERTED, WishInsertOutcome.INSERTED, WishInsertOutcome.QUOTA_EXCEEDED,
+                WishInsertOutcome.BENEFICIARY_NOT_FOUND, WishInsertOutcome.INSERTED), outcomes);
+        assertTrue(store.getWish("c").isEmpty());
+        assertEquals(3, store.getWishesForBeneficiary(2).size());
+    }
+
+    public void testBatchWithTakenIdStoresNothing() {
+        store.storeWish(new Wish("taken", "Kite", 1, 2));
+        try {
+            store.storeWishesWithinQuota(List.of(new Wish("fresh", "Kite", 1, 3), new Wish("taken", "Kite", 1, 4)), 3);
+            fail("a batch with a taken id should fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertTrue(store.getWish("fresh").isEmpty());
+        assertTrue(store.getWishesForBeneficiary(3).isEmpty());
+    }
+
+    public void testReplaceOnlyWishOfSameBeneficiary() {
+        store.storeWish(new Wish("old", "Kite", 1, 2));
+
+        assertTrue(store.replaceWish("old", new Wish("new", "Bike", 1, 3)).isEmpty());
+        assertTrue(store.getWish("old").isPresent());
+
+        Optional<WishStore.Replacement> replacement = store.replaceWish("old", new Wish("new", "Bike", 2, 2));
+        assertTrue(replacement.isPresent());
+        assertEquals("Kite", replacement.get().deleted().productName);
+        assertEquals("Bike", replacement.get().inserted().productName);
+        assertTrue(store.getWish("old").isEmpty());
+        assertEquals("new", store.getWishesForBeneficiary(2).get(0).id);
+    }
+
+    public void testDeleteFreesQuota() {
+        for (int i = 0; i < 3; i++) {
+            store.storeWish(new Wish("w" + i, "Kite", 1, 9));
+        }
+        store.deleteWish("w1");
+        assertEquals(2, store.getWishesForBeneficiary(9).size());
+        assertEquals(WishInsertOutcome.INSERTED, store.storeWishWithinQuota(new Wish("w3", "Kite", 1, 9), 3));
+    }
+
+    public void testPagesFollowIdOrder() {
+        for (String id : List.of("d", "a", "c", "b", "e")) {
+            store.storeWish(new Wish(id, "Kite", 1, 1 + id.charAt(0)));
+        }
+        Page<Wish> first = store.getWishesPage(new PageRequest(null, 2));
+        assertEquals(List.of("a", "b"), first.items().stream().map(wish -> wish.id).toList());
+        assertEquals("b", first.next());
+
+        Page<Wish> last = store.getWishesPage(new PageRequest("c", 2));
+        assertEquals(List.of("d", "e"), last.items().stream().map(wish -> wish.id).toList());
+        assertNull(last.next());
+    }
+
+    public void testCallersCannotChangeStoredWishes() {
+        Wish wish = new Wish("w", "Kite", 1, 1);
+        store.storeWish(wish);
+        wish.productName = "Changed";
+        store.getWish("w").get().productName = "Changed";
+        assertEquals("Kite", store.getWish("w").get().productName);
+    }
+
+    public void testBeneficiaryIndexGrows() {
+        WishStoreInMemory.BeneficiaryIndex index = new WishStoreInMemory.BeneficiaryIndex();
+        for (int id = -500; id < 500; id++) {
+            index.put(id, new Wish[]{new Wish("w" + id, "Kite", 1, id)});
+        }
+        assertEquals(1000, index.size());
+        for (int id = -500; id < 500; id++) {
+            assertEquals("w" + id, index.get(id)[0].id);
+        }
+        assertEquals(0, index.get(500).length);
+    }
+
+    public void testStripeIndexKeepsProbesShort() {
+        // the index of one stripe only holds the beneficiaries hashed to it, like in the store
+        WishStoreInMemory.BeneficiaryIndex index = new WishStoreInMemory.BeneficiaryIndex();
+        int stripe = WishStoreInMemory.stripeIndex(1);
+        List<Integer> stored = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id = 1; id <= 200_000; id++) {
+            if (WishStoreInMemory.stripeIndex(id) != stripe) {
+                continue;
+            }
+            if (id % 2 == 0) {
+                index.put(id, new Wish[0]);
+                stored.add(id);
+            } else {
+                missing.add(id);
+            }
+        }
+        assertTrue(stored.size() > 1000);
+
+        long hits = 0;
+        for (int id : stored) {
+            hits += index.probeLength(id);
+        }
+        long misses = 0;
+        for (int id : missing) {
+            misses += index.probeLength(id);
+        }
+        // linear probing at a load factor of at most 0.5 expects about 1.5 probes for a hit and 2.5 for a miss
+        assertTrue("hit probes " + (double) hits / stored.size(), hits < 2.0 * stored.size());
+        assertTrue("miss probes " + (double) misses / missing.size(), misses < 4.0 * missing.size());
+    }
+}
@@ -5,6 +5,7 @@ import junit.framework.TestCase;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
+import java.util.Optional;
 
 public class WishStorePostgresTest extends TestCase {
 
@@ -32,6 +33,32 @@ public class WishStorePostgresTest extends TestCase {
         }
     }
 
+    public void testReplaceWishOwnedByBeneficiary() {
+        WishStorePostgres store = new WishStorePostgres();
+        store.storeWish(new Wish("test-id", "Testy Product", 5, 1));
+
+        Optional<WishStorePostgres.Replacement> replacement =
+                store.replaceWish("test-id", new Wish("test-replacement-id", "Better Product", 2, 1));
+
+        assertTrue(replacement.isPresent());
+        assertEquals("Testy Product", replacement.get().deleted().productName);
+        assertEquals("test-replacement-id", replacement.get().inserted().id);
+        assertTrue(store.getWish("test-id").isEmpty());
+        assertTrue(store.getWish("test-replacement-id").isPresent());
+    }
+
+    public void testReplaceWishOfAnotherBeneficiaryChangesNothing() {
+        WishStorePostgres store = new WishStorePostgres();
+        store.storeWish(new Wish("test-id", "Testy Product", 5, 1));
+
+        Optional<WishStorePostgres.Replacement> replacement =
+                store.replaceWish("test-id", new Wish("test-replacement-id", "Better Product", 2, 99999999));
+
+        assertTrue(replacement.isEmpty());
+        assertTrue(store.getWish("test-id").isPresent());
+        assertTrue(store.getWish("test-replacement-id").isEmpty());
+    }
+
     public void testPrintAllWishesInWishStore() {
         WishStorePostgres store = new WishStorePostgres();
         System.out.println("All wishes in WishStorePostgres:");
@@ -62,7 +89,7 @@ public class WishStorePostgresTest extends TestCase {
         String url = "jdbc:postgresql://localhost:5432/webapp_db";
         String user = "geert";
         String password = "gman";
-        String sql = "DELETE FROM wishes WHERE id = 'test-id' or id = 'malicious-id'";
+        String sql = "DELETE FROM wishes WHERE id = 'test-id' or id = 'malicious-id' or id = 'test-replacement-id'";
         String people = "INSERT INTO people (\n" +
                 "    firstName, \n" +
                 "    lastName, \n" +
@@ -0,0 +1,137 @@
+package cloud.dpgmedia;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WishStoreWriteBehindTest extends TestCase {
+
+    /**
+     * Counts the batches the writer sends, people 1 to 100 exist.
+     */
+    private static class CountingStore extends WishStoreInMemory {
+        final AtomicInteger batchCalls = new AtomicInteger();
+
+        CountingStore() {
+            super(id -> id >= 1 && id <= 100);
+        }
+
+        @Override
+        public List<WishInsertOutcome> storeWishesWithinQuota(List<Wish> wishes, int maxWishes) {
+            batchCalls.incrementAndGet();
+            return super.storeWishesWithinQuota(wishes, maxWishes);
+        }
+    }
+
+    private final CountingStore delegate = new CountingStore();
+    private final List<WishStoreWriteBehind> stores = new ArrayList<>();
+
+    protected void tearDown() {
+        stores.forEach(WishStoreWriteBehind::close);
+    }
+
+    private WishStoreWriteBehind writeBehind(int batchSize, long maxDelayMillis, int queueCapacity) {
+        WishStoreWriteBehind store = new WishStoreWriteBehind(delegate, batchSize, maxDelayMillis, queueCapacity);
+        stores.add(store);
+        return store;
+    }
+
+    public void testSingleWishIsWrittenAfterMaxDelay() {
+        WishStoreWriteBehind store = writeBehind(100, 5, 1000);
+        assertEquals(WishInsertOutcome.INSERTED, store.storeWishWithinQuota(new Wish("w", "Kite", 1, 1), 3));
+        // stored once the call returns
+        assertTrue(delegate.getWish("w").isPresent());
+        assertEquals(1, store.getStats().batches());
+    }
+
+    public void testConcurrentInsertsShareBatches() throws Exception {
+        WishStoreWriteBehind store = writeBehind(50, 50, 1000);
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WishInsertOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Wish wish = new Wish("w" + i, "Kite", 1, 1 + i % 100);
+            outcomes.add(threads.submit(() -> {
+                start.await();
+                return store.storeWishWithinQuota(wish, 3);
+            }));
+        }
+        start.countDown();
+        for (Future<WishInsertOutcome> outcome : outcomes) {
+            assertEquals(WishInsertOutcome.INSERTED, outcome.get(10, TimeUnit.SECONDS));
+        }
+        threads.shutdown();
+
+        assertEquals(200, delegate.getAllWishes().size());
+        assertTrue("expected far fewer batches than wishes but got " + delegate.batchCalls.get(), delegate.batchCalls.get() <= 20);
+        assertEquals(200, store.getStats().wishes());
+    }
+
+    public void testQuotaStillApplies() {
+        WishStoreWriteBehind store = writeBehind(100, 1, 1000);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(WishInsertOutcome.INSERTED, store.storeWishWithinQuota(new Wish("w" + i, "Kite", 1, 5), 3));
+        }
+        assertEquals(WishInsertOutcome.QUOTA_EXCEEDED, store.storeWishWithinQuota(new Wish("w3", "Kite", 1, 5), 3));
+        assertEquals(WishInsertOutcome.BENEFICIARY_NOT_FOUND, store.storeWishWithinQuota(new Wish("w4", "Kite", 1, 500), 3));
+    }
+
+    public void testFailingWishDoesNotFailItsBatch() throws Exception {
+        delegate.storeWish(new Wish("taken", "Kite", 1, 1));
+        WishStoreWriteBehind store = writeBehind(10, 200, 1000);
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        Future<WishInsertOutcome> fresh = threads.submit(() -> store.storeWishWithinQuota(new Wish("fresh", "Kite", 1, 2), 3));
+        Future<WishInsertOutcome> duplicate = threads.submit(() -> store.storeWishWithinQuota(new Wish("taken", "Kite", 1, 3), 3));
+
+        assertEquals(WishInsertOutcome.INSERTED, fresh.get(10, TimeUnit.SECONDS));
+        try {
+            duplicate.get(10, TimeUnit.SECONDS);
+            fail("the wish with a taken id should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("already exists"));
+        }
+        threads.shutdown();
+        assertTrue(delegate.getWish("fresh").isPresent());
+    }
+
+    public void testCloseWritesTheBatchBeingCollected() throws Exception {
+        // the writer would wait ten seconds for more wishes
+        WishStoreWriteBehind store = writeBehind(100, 10_000, 1000);
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<WishInsertOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Wish wish = new Wish("w" + i, "Kite", 1, 1 + i);
+            outcomes.add(threads.submit(() -> store.storeWishWithinQuota(wish, 3)));
+        }
+        // wait until the writer took all three from the queue
+        for (int i = 0; i < 100 && store.getStats().queued() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(0, delegate.getAllWishes().size());
+
+        long start = System.nanoTime();
+        store.close();
+        for (Future<WishInsertOutcome> outcome : outcomes) {
+            assertEquals(WishInsertOutcome.INSERTED, outcome.get(1, TimeUnit.SECONDS));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        threads.shutdown();
+
+        assertEquals(3, delegate.getAllWishes().size());
+        try {
+            store.storeWishWithinQuota(new Wish("late", "Kite", 1, 1), 3);
+            fail("a closed store should refuse wishes");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
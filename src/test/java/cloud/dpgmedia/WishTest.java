@@ -43,6 +43,15 @@ public class WishTest extends TestCase {
         }
     }
 
+    public void testWishQuantityMustBeANumber() {
+        try {
+            BasicApi.parseWishFromJson("{\"productName\":\"Laptop\", \"quantity\":\"abc\", \"beneficiaryId\":5}");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Wish Quantity must be a number", e.getMessage());
+        }
+    }
+
     public void testWishWithSpacesBetweenColons() {
         Wish wish = BasicApi.parseWishFromJson("{ \"productName\" : \"Laptop\" , \"quantity\" : 2 , \"beneficiaryId\":5 }");
         assert wish.id != null && !wish.id.isEmpty();
@@ -111,4 +120,33 @@ public class WishTest extends TestCase {
         }
     }
 
+    public void testWishBeneficiaryIdMustBeAnInteger() {
+        try {
+            BasicApi.parseWishFromJson("{\"productName\":\"Laptop\", \"quantity\":2, \"beneficiaryId\":\"5\"}");
+            fail("Should throw exception when beneficiaryId is a string");
+        } catch (IllegalArgumentException e) {
+            assertEquals("beneficiaryId must be an integer", e.getMessage());
+        }
+    }
+
+    public void testMalformedWishJsonReturnsNull() {
+        assertNull(BasicApi.parseWishFromJson("{\"productName\":"));
+    }
+
+    public void testReplacementWishMissingIdOfWishToBeReplaced() {
+        try {
+            WishReplacementHandler.parseReplacementWishFromJson("{\"id\":\"128\",\"productName\":\"pencil\",\"quantity\":10, \"beneficiaryId\":1}");
+            fail("Should throw exception when idOfWishToBeReplaced is missing");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Missing field: idOfWishToBeReplaced", e.getMessage());
+        }
+    }
+
+    public void testReplacementWishNumericIds() {
+        ReplacementWish replacementWish = WishReplacementHandler.parseReplacementWishFromJson("{\"id\":128,\"productName\":\"pencil\",\"quantity\":\"10\", \"beneficiaryId\":1, \"idOfWishToBeReplaced\":126}");
+        assertEquals("128", replacementWish.id);
+        assertEquals("126", replacementWish.idOfWishToBeReplaced);
+        assertEquals(10, replacementWish.quantity);
+    }
+
 }